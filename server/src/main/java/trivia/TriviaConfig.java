@@ -4,7 +4,9 @@ package trivia;
 import io.micronaut.context.annotation.ConfigurationProperties;
 
 import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Positive;
+import java.time.Duration;
 
 @ConfigurationProperties("trivia")
 public class TriviaConfig {
@@ -18,6 +20,20 @@ public class TriviaConfig {
     @Positive
     private int minimumPlayersPerGame;
 
+    @Positive
+    private int schedulerBatchSize = 1000;
+
+    @NotNull
+    private Duration roundDuration = Duration.ofSeconds(15);
+
+    @NotNull
+    private Duration roundStartDelay = Duration.ofSeconds(3);
+
+    @Positive
+    private int maxQuestionPacks = 100;
+
+    @NotNull
+    private Duration schedulerMaxSleep = Duration.ofSeconds(10);
 
     public String getDataPath() {
         return dataPath;
@@ -43,4 +59,44 @@ public class TriviaConfig {
         this.minimumPlayersPerGame = minimumPlayersPerGame;
     }
 
+    public int getSchedulerBatchSize() {
+        return schedulerBatchSize;
+    }
+
+    public void setSchedulerBatchSize(int schedulerBatchSize) {
+        this.schedulerBatchSize = schedulerBatchSize;
+    }
+
+    public Duration getRoundDuration() {
+        return roundDuration;
+    }
+
+    public void setRoundDuration(Duration roundDuration) {
+        this.roundDuration = roundDuration;
+    }
+
+    public Duration getRoundStartDelay() {
+        return roundStartDelay;
+    }
+
+    public void setRoundStartDelay(Duration roundStartDelay) {
+        this.roundStartDelay = roundStartDelay;
+    }
+
+    public int getMaxQuestionPacks() {
+        return maxQuestionPacks;
+    }
+
+    public void setMaxQuestionPacks(int maxQuestionPacks) {
+        this.maxQuestionPacks = maxQuestionPacks;
+    }
+
+    public Duration getSchedulerMaxSleep() {
+        return schedulerMaxSleep;
+    }
+
+    public void setSchedulerMaxSleep(Duration schedulerMaxSleep) {
+        this.schedulerMaxSleep = schedulerMaxSleep;
+    }
+
 }
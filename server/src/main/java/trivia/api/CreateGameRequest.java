@@ -2,12 +2,23 @@ package trivia.api;
 
 import io.micronaut.core.annotation.Introspected;
 import lombok.Data;
+import trivia.domain.Difficulty;
 
 import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.Size;
+import java.util.List;
 
 @Introspected
 @Data
 public class CreateGameRequest {
     @NotBlank
     private String category;
+
+    // known players, the game avoids questions they have been dealt before
+    @Size(max = 100)
+    private List<String> players;
+
+    // the difficulty of the rounds, stretched over the game, e.g. [easy, medium, hard]. Takes precedence over players.
+    @Size(max = 100)
+    private List<Difficulty> difficulty;
 }
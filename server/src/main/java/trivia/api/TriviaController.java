@@ -1,24 +1,36 @@
 package trivia.api;
 
+import io.micronaut.http.HttpHeaders;
+import io.micronaut.http.HttpRequest;
 import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.MutableHttpResponse;
 import io.micronaut.http.annotation.*;
+import io.micronaut.http.annotation.Error;
 import io.micronaut.http.uri.UriBuilder;
 import io.micronaut.validation.Validated;
 import reactor.core.publisher.Mono;
 import trivia.domain.Game;
 import trivia.domain.Question;
+import trivia.repository.RepositoryTimeoutException;
+import trivia.repository.RepositoryUnavailableException;
 import trivia.service.GameService;
 import trivia.service.QuestionService;
 
+import javax.annotation.Nullable;
 import javax.validation.Valid;
 import java.net.URI;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 @Controller("/api")
 @Validated
 public class TriviaController {
 
+    static final String CATEGORIES_CACHE_CONTROL = "public, max-age=10";
+    static final String STATS_CACHE_CONTROL = "public, max-age=1";
+
     private final QuestionService questionService;
     private final GameService gameService;
 
@@ -28,19 +40,53 @@ public class TriviaController {
     }
 
     @Get("/categories")
-    Mono<CategoriesResponse> categories() {
+    Mono<MutableHttpResponse<CategoriesResponse>> categories(@Nullable @Header(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
         return questionService.listCategories()
             .collectList()
-            .map(this::createCategoryResponse);
+            .map(cats -> {
+                String etag = createETag(cats);
+                MutableHttpResponse<CategoriesResponse> response = matchesETag(ifNoneMatch, etag)
+                    ? HttpResponse.notModified()
+                    : HttpResponse.ok(createCategoryResponse(cats));
+                return response.header(HttpHeaders.ETAG, etag)
+                    .header(HttpHeaders.CACHE_CONTROL, CATEGORIES_CACHE_CONTROL);
+            });
     }
 
     @Post("/games")
     Mono<HttpResponse<CreateGameResponse>> createGame(@Body @Valid CreateGameRequest request) {
-        Mono<List<Question>> questions = questionService.allocateQuestions(request.getCategory());
+        Mono<List<Question>> questions;
+        if (request.getDifficulty() != null && !request.getDifficulty().isEmpty()) {
+            questions = questionService.allocateQuestionsByDifficulty(request.getCategory(), request.getDifficulty());
+        } else if (request.getPlayers() != null && !request.getPlayers().isEmpty()) {
+            questions = questionService.allocateQuestions(request.getCategory(), request.getPlayers());
+        } else {
+            questions = questionService.allocateQuestions(request.getCategory());
+        }
         return questions.flatMap(qs -> gameService.createGame(request.getCategory(), qs))
             .map(game -> HttpResponse.created(createCreateGameResponse(game.getId()), buildGameUri(game)));
     }
 
+    @Get("/games/{gameId}/rounds/{round}/stats")
+    Mono<MutableHttpResponse<Map<String, Integer>>> roundStats(String gameId, int round) {
+        // polled by live overlays, a short max-age lets a cache in front absorb most of them. The stats of a running
+        // round lag by up to a write-behind interval and may differ between nodes, so they are never more than a hint
+        return gameService.findStats(gameId, round)
+            .map(stats -> HttpResponse.ok(stats).header(HttpHeaders.CACHE_CONTROL, STATS_CACHE_CONTROL));
+    }
+
+    @Error(exception = RepositoryUnavailableException.class)
+    HttpResponse<?> unavailable(HttpRequest<?> request, RepositoryUnavailableException e) {
+        // shed the load until the repository recovers
+        return HttpResponse.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())));
+    }
+
+    @Error(exception = RepositoryTimeoutException.class)
+    HttpResponse<?> timedOut(HttpRequest<?> request, RepositoryTimeoutException e) {
+        return HttpResponse.status(HttpStatus.GATEWAY_TIMEOUT);
+    }
+
     private URI buildGameUri(Game game) {
         return UriBuilder.of("/api/games").path(game.getId()).build();
     }
@@ -51,6 +97,30 @@ public class TriviaController {
         return resp;
     }
 
+    private String createETag(List<String> cats) {
+        return '"' + Integer.toHexString(cats.hashCode()) + '"';
+    }
+
+    /**
+     * Whether an If-None-Match header matches the ETag. The header is * or a comma separated list of tags, compared
+     * weakly, so a W/ prefix is ignored.
+     */
+    static boolean matchesETag(@Nullable String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private CategoriesResponse createCategoryResponse(List<String> cats) {
         var resp = new CategoriesResponse();
         resp.setCategories(cats);
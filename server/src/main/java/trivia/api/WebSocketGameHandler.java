@@ -10,6 +10,7 @@ import io.micronaut.websocket.annotation.ServerWebSocket;
 import lombok.extern.slf4j.Slf4j;
 import org.reactivestreams.Publisher;
 import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import trivia.api.protocol.*;
 import trivia.domain.Round;
@@ -26,6 +27,9 @@ public class WebSocketGameHandler implements AutoCloseable {
 
     static final MediaType JSON_TYPE = MediaType.APPLICATION_JSON_TYPE;
 
+    // session attribute holding the player's ordinal in the game
+    static final String PLAYER_ATTRIBUTE = "player";
+
     private final WebSocketBroadcaster broadcaster;
 
     private final GameService gameService;
@@ -45,14 +49,16 @@ public class WebSocketGameHandler implements AutoCloseable {
             .doOnNext(this::broadcastGameStarted)
             .subscribe();
 
+        // in order, without waiting on the thread the events arrive on. A round that can't be loaded in time is
+        // skipped rather than holding up the rounds behind it.
         this.roundMessageEvents = this.gameService.subscribeRoundMessageEvents()
-            .doOnNext(msg -> {
-                if (msg.getStarted()) {
-                    broadcastRoundStarted(msg.getGameId(), msg.getRound());
-                } else {
-                    broadcastRoundCompleted(msg.getGameId(), msg.getRound());
-                }
-            })
+            .concatMap(msg -> (msg.getStarted()
+                    ? broadcastRoundStarted(msg.getGameId(), msg.getRound())
+                    : broadcastRoundCompleted(msg.getGameId(), msg.getRound()))
+                .onErrorResume(e -> {
+                    log.warn("Failed to broadcast Game[{}] Round[{}]", msg.getGameId(), msg.getRound(), e);
+                    return Mono.empty();
+                }))
             .subscribe();
     }
 
@@ -90,8 +96,11 @@ public class WebSocketGameHandler implements AutoCloseable {
         WebSocketSession session) {
         log.info("Answer - Game[{}] username[{}]: {}", gameId, username, message);
 
-        // if correct answer, send PlayerAdvanced message, otherwise send PlayerEliminated message.
-        return gameService.answerQuestion(gameId, message)
+        // if correct answer, send PlayerAdvanced message, otherwise send PlayerEliminated message. Nothing is sent
+        // for a dropped answer.
+        int answer = parseAnswer(message);
+        return findPlayer(gameId, username, session)
+            .flatMap(player -> gameService.answerQuestion(gameId, player, answer))
             .map(b -> b ? PlayerAdvanced.builder().username(username).build() : PlayerEliminated.builder().username(username).build())
             .flatMap(msg -> Mono.from(session.send(msg))); // not broadcast
     }
@@ -114,33 +123,63 @@ public class WebSocketGameHandler implements AutoCloseable {
         broadcaster.broadcastSync(msg, JSON_TYPE, isGame(gameId));
     }
 
-    void broadcastRoundStarted(String gameId, int roundNumber) {
-        // shuffle correct and incorrect answers
-        Round round = gameService.findRound(gameId, roundNumber).blockOptional().orElseThrow(); // FIXME
-        // move to service
-        var answers = new ArrayList<>(round.getQuestion().getIncorrectAnswers());
-        answers.add(round.getQuestion().getCorrectAnswer());
-        Collections.shuffle(answers);
-        var msg = RoundStarted.builder()
-            .round(roundNumber)
-            .question(round.getQuestion().getText())
-            .answers(answers)
-            .build();
-        log.info("Game[{}] Round[{}] started", gameId, round);
-        broadcaster.broadcastSync(msg, JSON_TYPE, isGame(gameId));
+    Mono<Void> broadcastRoundStarted(String gameId, int roundNumber) {
+        // the options are in the same order on every node, players answer with an index into them
+        return gameService.findRound(gameId, roundNumber)
+            .switchIfEmpty(Mono.error(() -> new NoSuchElementException("Game[" + gameId + "] Round[" + roundNumber + "] not found")))
+            .flatMap(round -> {
+                var msg = RoundStarted.builder()
+                    .round(roundNumber)
+                    .question(round.getQuestion().getText())
+                    .answers(round.getOptions().getAnswers())
+                    .build();
+                log.info("Game[{}] Round[{}] started", gameId, round);
+                return Flux.from(broadcaster.broadcast(msg, JSON_TYPE, isGame(gameId))).then();
+            });
     }
 
-    void broadcastRoundCompleted(String gameId, int roundNumber) {
-        Round round = gameService.findRound(gameId, roundNumber).blockOptional().orElseThrow(); // FIXME
-        Map<String,Integer> stats = gameService.findStats(gameId, roundNumber).blockOptional().orElseThrow(); // FIXME
-        var msg = RoundCompleted.builder()
-            .round(roundNumber)
-            .answer(round.getQuestion().getCorrectAnswer())
-            .stats(stats)
-            .players(round.getPlayers())
-            .build();
-        log.info("Game[{}] Round[{}] completed", gameId, round);
-        broadcaster.broadcastSync(msg, JSON_TYPE, isGame(gameId));
+    Mono<Void> broadcastRoundCompleted(String gameId, int roundNumber) {
+        return gameService.findRound(gameId, roundNumber)
+            .zipWith(gameService.findStats(gameId, roundNumber))
+            .switchIfEmpty(Mono.error(() -> new NoSuchElementException("Game[" + gameId + "] Round[" + roundNumber + "] not found")))
+            .flatMap(found -> {
+                Round round = found.getT1();
+                var msg = RoundCompleted.builder()
+                    .round(roundNumber)
+                    .answer(round.getQuestion().getCorrectAnswer())
+                    .answerIndex(round.getOptions().getCorrectIndex())
+                    .stats(found.getT2())
+                    .players(round.getPlayers())
+                    .build();
+                log.info("Game[{}] Round[{}] completed", gameId, round);
+                return Flux.from(broadcaster.broadcast(msg, JSON_TYPE, isGame(gameId))).then();
+            });
+    }
+
+    private Mono<Integer> findPlayer(String gameId, String username, WebSocketSession session) {
+        // looked up once per connection
+        Optional<Integer> player = session.get(PLAYER_ATTRIBUTE, Integer.class);
+        return player.map(Mono::just).orElseGet(() -> gameService.findPlayer(gameId, username)
+            .doOnNext(p -> session.put(PLAYER_ATTRIBUTE, p)));
+    }
+
+    /**
+     * Parse an answer message, which is the index of the chosen answer option. Anything else is a wrong answer.
+     */
+    static int parseAnswer(String message) {
+        String answer = message.strip();
+        if (answer.isEmpty() || answer.length() > 2) {
+            return -1;
+        }
+        int index = 0;
+        for (int i = 0; i < answer.length(); i++) {
+            char c = answer.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            index = index * 10 + (c - '0');
+        }
+        return index;
     }
 
     private Predicate<WebSocketSession> isGame(String gameId) {
@@ -16,6 +16,9 @@ public class RoundCompleted implements GameMessage {
 
     private String answer;
 
+    // index of the answer in RoundStarted.answers
+    private int answerIndex;
+
     private Map<String,Integer> stats;
 
     private int players;
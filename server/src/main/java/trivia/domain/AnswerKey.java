@@ -0,0 +1,32 @@
+package trivia.domain;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * What a node needs to check an answer to the current round of a game, without asking the repository.
+ */
+@Value
+@Builder
+public class AnswerKey {
+
+    private int round;
+
+    // index into the round's AnswerOptions
+    private int correctIndex;
+
+    private int options;
+
+    // epoch millis
+    private long opensAt;
+
+    private long closesAt;
+
+    public boolean isOpen(long now) {
+        return now >= opensAt && now < closesAt;
+    }
+
+    public boolean isOption(int answer) {
+        return answer >= 0 && answer < options;
+    }
+}
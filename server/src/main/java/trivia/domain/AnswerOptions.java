@@ -0,0 +1,55 @@
+package trivia.domain;
+
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The answers of a round in the order they are offered to players, who answer with an index into them. The order
+ * is shuffled, but every node derives the same order from the game and round.
+ */
+@Value
+public class AnswerOptions {
+
+    /**
+     * The most answers a question may offer, answer counts are kept in a fixed array of this size
+     */
+    public static final int MAX_SIZE = 16;
+
+    private List<String> answers;
+
+    private int correctIndex;
+
+    public static AnswerOptions of(Question question, String gameId, int round) {
+        List<String> answers = new ArrayList<>(count(question));
+        answers.addAll(question.getIncorrectAnswers());
+        answers.add(question.getCorrectAnswer());
+        int correct = answers.size() - 1;
+        // Fisher-Yates with a seeded Random, both are fully specified so the order never depends on the JVM
+        Random random = new Random(31L * gameId.hashCode() + round);
+        for (int i = answers.size() - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Collections.swap(answers, i, j);
+            if (correct == i) {
+                correct = j;
+            } else if (correct == j) {
+                correct = i;
+            }
+        }
+        return new AnswerOptions(List.copyOf(answers), correct);
+    }
+
+    /**
+     * Count the answers a question offers
+     */
+    public static int count(Question question) {
+        return question.getIncorrectAnswers().size() + 1;
+    }
+
+    public int size() {
+        return answers.size();
+    }
+}
@@ -16,6 +16,8 @@ public class Game {
 
     private int players;
 
+    private boolean finished;
+
     public boolean isStarted() {
         return round != null;
     }
@@ -10,5 +10,7 @@ public class Round {
 
     private Question question;
 
+    private AnswerOptions options;
+
     private int players;
 }
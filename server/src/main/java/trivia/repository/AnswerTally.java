@@ -0,0 +1,163 @@
+package trivia.repository;
+
+import lombok.Value;
+import trivia.domain.AnswerOptions;
+import trivia.domain.Question;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Answer counts accumulated on this node until they are written to Redis. Counting only touches a striped counter,
+ * so it never contends, and the counts are written in batches. Each round has a fixed array of counters indexed by
+ * answer option, so a single round can be written without looking at any other.
+ * <p>
+ * Counters are never reset, the count already written is kept next to them instead, so increments that race with a
+ * flush are written by the next one rather than lost. A closed round is remembered for a while, so answers that arrive
+ * after it was closed are dropped rather than counted in a round nothing closes again.
+ */
+class AnswerTally {
+
+    // questions offering more are not saved
+    static final int MAX_OPTIONS = AnswerOptions.MAX_SIZE;
+
+    // rounds closed recently on this node
+    static final int MAX_CLOSED_ROUNDS = 10_000;
+
+    private final ConcurrentMap<RoundKey, Counter[]> rounds = new ConcurrentHashMap<>();
+    private final NearCache<RoundKey, Boolean> closed = new NearCache<>(MAX_CLOSED_ROUNDS);
+
+    /**
+     * Whether every answer a question offers can be counted
+     */
+    static boolean canCount(Question question) {
+        return AnswerOptions.count(question) <= MAX_OPTIONS;
+    }
+
+    void increment(String gameId, int round, int option) {
+        if (option < 0 || option >= MAX_OPTIONS) {
+            throw new IllegalArgumentException("No such answer option " + option);
+        }
+        RoundKey key = new RoundKey(gameId, round);
+        if (closed.get(key) != null) {
+            return;
+        }
+        rounds.computeIfAbsent(key, k -> newCounters())[option].count.increment();
+    }
+
+    /**
+     * Take the counts that have not been written yet, they are considered written until {@link #restore} is called.
+     * Counts of closed rounds, that raced with closing the round or could not be written, are forgotten once taken.
+     */
+    List<Delta> drain() {
+        List<Delta> deltas = new ArrayList<>();
+        rounds.forEach((round, counters) -> {
+            if (closed.get(round) != null) {
+                rounds.remove(round, counters);
+            }
+            take(round, counters, deltas);
+        });
+        return deltas;
+    }
+
+    /**
+     * Take the counts of one round that have not been written yet.
+     */
+    List<Delta> drain(String gameId, int round) {
+        List<Delta> deltas = new ArrayList<>();
+        RoundKey key = new RoundKey(gameId, round);
+        var counters = rounds.get(key);
+        if (counters != null) {
+            take(key, counters, deltas);
+        }
+        return deltas;
+    }
+
+    /**
+     * Take the counts of a closed round that have not been written yet, and stop counting the round. Answers that
+     * race with closing the round may not be counted.
+     */
+    List<Delta> close(String gameId, int round) {
+        List<Delta> deltas = new ArrayList<>();
+        RoundKey key = new RoundKey(gameId, round);
+        closed.computeIfAbsent(key, k -> Boolean.TRUE);
+        var counters = rounds.remove(key);
+        if (counters != null) {
+            take(key, counters, deltas);
+        }
+        return deltas;
+    }
+
+    /**
+     * Count a delta that could not be written again.
+     */
+    void restore(Delta delta) {
+        Key key = delta.getKey();
+        RoundKey roundKey = new RoundKey(key.getGameId(), key.getRound());
+        var counters = rounds.get(roundKey);
+        if (counters != null) {
+            counters[key.getOption()].flushed.addAndGet(-delta.getCount());
+        } else {
+            // the round was closed meanwhile, the next flush writes it
+            rounds.computeIfAbsent(roundKey, k -> newCounters())[key.getOption()].count.add(delta.getCount());
+        }
+    }
+
+    int size() {
+        return rounds.size();
+    }
+
+    private static Counter[] newCounters() {
+        Counter[] counters = new Counter[MAX_OPTIONS];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new Counter();
+        }
+        return counters;
+    }
+
+    private static void take(RoundKey round, Counter[] counters, List<Delta> deltas) {
+        for (int option = 0; option < counters.length; option++) {
+            long count = counters[option].take();
+            if (count > 0) {
+                deltas.add(new Delta(new Key(round.gameId, round.round, option), count));
+            }
+        }
+    }
+
+    @Value
+    static class Key {
+        String gameId;
+        int round;
+        int option;
+    }
+
+    @Value
+    static class Delta {
+        Key key;
+        long count;
+    }
+
+    @Value
+    private static class RoundKey {
+        String gameId;
+        int round;
+    }
+
+    private static class Counter {
+        private final LongAdder count = new LongAdder();
+        private final AtomicLong flushed = new AtomicLong();
+
+        synchronized long take() {
+            long delta = count.sum() - flushed.get();
+            if (delta <= 0) {
+                return 0;
+            }
+            flushed.addAndGet(delta);
+            return delta;
+        }
+    }
+}
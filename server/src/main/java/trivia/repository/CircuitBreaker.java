@@ -0,0 +1,140 @@
+package trivia.repository;
+
+import io.lettuce.core.RedisCommandExecutionException;
+import io.lettuce.core.RedisException;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Refuses operations for a while once enough of them in a row failed, so a slow or unreachable Redis fails callers
+ * straight away instead of piling up commands. Then one operation is let through to try again, and its outcome
+ * closes the circuit or opens it for another while. Only failures to reach Redis count, a command Redis rejected is
+ * an answer.
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        closed,
+        open,
+        // one operation is trying Redis again
+        halfOpen
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicBoolean trying = new AtomicBoolean();
+    private volatile State state = State.closed;
+    private volatile long openedAt;
+
+    CircuitBreaker(String name, int failureThreshold, Duration openDuration) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    <T> Mono<T> protect(Mono<T> operation) {
+        return Mono.defer(() -> {
+            if (!tryAcquire()) {
+                return Mono.error(unavailable());
+            }
+            return operation
+                .doOnSuccess(v -> onSuccess())
+                .doOnError(this::onError)
+                .doOnCancel(this::onCancel);
+        });
+    }
+
+    <T> Flux<T> protect(Flux<T> operation) {
+        return Flux.defer(() -> {
+            if (!tryAcquire()) {
+                return Flux.error(unavailable());
+            }
+            return operation
+                .doOnComplete(this::onSuccess)
+                .doOnError(this::onError)
+                .doOnCancel(this::onCancel);
+        });
+    }
+
+    <T> T call(Supplier<T> operation) {
+        if (!tryAcquire()) {
+            throw unavailable();
+        }
+        try {
+            T result = operation.get();
+            onSuccess();
+            return result;
+        } catch (RuntimeException e) {
+            onError(e);
+            throw e;
+        }
+    }
+
+    private boolean tryAcquire() {
+        if (state == State.closed) {
+            return true;
+        }
+        if (System.currentTimeMillis() - openedAt < openDuration.toMillis() || !trying.compareAndSet(false, true)) {
+            return false;
+        }
+        state = State.halfOpen;
+        return true;
+    }
+
+    private void onSuccess() {
+        failures.set(0);
+        if (state != State.closed) {
+            log.info("Circuit[{}] closed", name);
+            state = State.closed;
+            trying.set(false);
+        }
+    }
+
+    private void onError(Throwable e) {
+        if (!isFailure(e)) {
+            onSuccess();
+        } else if (state == State.halfOpen || failures.incrementAndGet() >= failureThreshold) {
+            open(e);
+        }
+    }
+
+    private void onCancel() {
+        // a cancelled try tells nothing, let the next operation try instead
+        if (state == State.halfOpen) {
+            state = State.open;
+            trying.set(false);
+        }
+    }
+
+    private synchronized void open(Throwable e) {
+        if (state != State.open) {
+            log.warn("Circuit[{}] open for {}ms after {} failures", name, openDuration.toMillis(), failures.get(), e);
+        }
+        openedAt = System.currentTimeMillis();
+        state = State.open;
+        failures.set(0);
+        trying.set(false);
+    }
+
+    private RepositoryUnavailableException unavailable() {
+        return new RepositoryUnavailableException("Circuit[" + name + "] is open", openDuration);
+    }
+
+    static boolean isFailure(Throwable e) {
+        return e instanceof RepositoryTimeoutException
+            || (e instanceof RedisException && !(e instanceof RedisCommandExecutionException));
+    }
+}
@@ -0,0 +1,8 @@
+package trivia.repository;
+
+/**
+ * Format used to write records to Redis. Records in either format can always be read.
+ */
+public enum CodecFormat {
+    json, compact
+}
@@ -0,0 +1,187 @@
+package trivia.repository;
+
+import trivia.domain.Difficulty;
+import trivia.domain.Question;
+import trivia.domain.RoundEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Length prefixed records, without field names and cheap to parse. Each field is written as {@code <length>:<chars>},
+ * a missing value has length -1.
+ * <ul>
+ *     <li>Question: {@code Q} category, difficulty, text, correct answer, number of incorrect answers, incorrect answers</li>
+ *     <li>Compressed question: {@code Z} then the deflated question, base 64 encoded</li>
+ *     <li>Round event: {@code E<1 if started, else 0><round>:<game id>}, also parsed by the Lua scripts</li>
+ * </ul>
+ * Values are stored through a string codec, so compressed bytes have to be base 64 encoded. Compression is only
+ * used when it makes the record shorter.
+ */
+class CompactCodec implements RecordCodec {
+
+    static final char QUESTION_TAG = 'Q';
+    static final char COMPRESSED_QUESTION_TAG = 'Z';
+    static final char ROUND_EVENT_TAG = 'E';
+
+    // shorter questions rarely get any smaller
+    private static final int MIN_COMPRESS_LENGTH = 200;
+
+    private final boolean compress;
+
+    CompactCodec(boolean compress) {
+        this.compress = compress;
+    }
+
+    @Override
+    public Question decodeQuestion(String data) {
+        try {
+            if (data.charAt(0) == COMPRESSED_QUESTION_TAG) {
+                data = inflate(data.substring(1));
+            }
+            if (data.charAt(0) != QUESTION_TAG) {
+                throw new IllegalArgumentException("Not a compact question");
+            }
+            var cursor = new Cursor(data, 1);
+            var builder = Question.builder()
+                .category(cursor.next());
+            String difficulty = cursor.next();
+            builder.difficulty(difficulty == null ? null : Difficulty.valueOf(difficulty))
+                .text(cursor.next())
+                .correctAnswer(cursor.next());
+            String incorrect = cursor.next();
+            if (incorrect != null) {
+                int n = Integer.parseInt(incorrect);
+                List<String> answers = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    answers.add(cursor.next());
+                }
+                builder.incorrectAnswers(answers);
+            }
+            return builder.build();
+        } catch (RuntimeException | DataFormatException e) {
+            throw new RepositoryExpection("Failed to decode Question from repository", e);
+        }
+    }
+
+    @Override
+    public String encodeQuestion(Question q) {
+        var sb = new StringBuilder(256).append(QUESTION_TAG);
+        field(sb, q.getCategory());
+        field(sb, q.getDifficulty() == null ? null : q.getDifficulty().name());
+        field(sb, q.getText());
+        field(sb, q.getCorrectAnswer());
+        List<String> incorrect = q.getIncorrectAnswers();
+        field(sb, incorrect == null ? null : String.valueOf(incorrect.size()));
+        if (incorrect != null) {
+            incorrect.forEach(a -> field(sb, a));
+        }
+        String encoded = sb.toString();
+        if (compress && encoded.length() >= MIN_COMPRESS_LENGTH) {
+            String compressed = COMPRESSED_QUESTION_TAG + deflate(encoded);
+            if (compressed.length() < encoded.length()) {
+                return compressed;
+            }
+        }
+        return encoded;
+    }
+
+    @Override
+    public RoundEvent decodeRoundEvent(String data) {
+        try {
+            int colon = data.indexOf(':');
+            if (data.charAt(0) != ROUND_EVENT_TAG || colon < 3) {
+                throw new IllegalArgumentException("Not a compact round event");
+            }
+            return RoundEvent.builder()
+                .started(data.charAt(1) == '1')
+                .round(Integer.parseInt(data, 2, colon, 10))
+                .gameId(data.substring(colon + 1))
+                .build();
+        } catch (RuntimeException e) {
+            throw new RepositoryExpection("Failed to decode RoundEvent from repository: " + data, e);
+        }
+    }
+
+    @Override
+    public String encodeRoundEvent(RoundEvent r) {
+        return new StringBuilder(16)
+            .append(ROUND_EVENT_TAG)
+            .append(Boolean.TRUE.equals(r.getStarted()) ? '1' : '0')
+            .append(r.getRound())
+            .append(':')
+            .append(r.getGameId())
+            .toString();
+    }
+
+    private static void field(StringBuilder sb, String value) {
+        if (value == null) {
+            sb.append("-1:");
+        } else {
+            sb.append(value.length()).append(':').append(value);
+        }
+    }
+
+    private static String deflate(String data) {
+        var deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(data.getBytes(StandardCharsets.UTF_8));
+            deflater.finish();
+            var out = new ByteArrayOutputStream(data.length());
+            byte[] buffer = new byte[512];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return Base64.getEncoder().withoutPadding().encodeToString(out.toByteArray());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static String inflate(String data) throws DataFormatException {
+        var inflater = new Inflater(true);
+        try {
+            inflater.setInput(Base64.getDecoder().decode(data));
+            var out = new ByteArrayOutputStream(data.length() * 2);
+            byte[] buffer = new byte[512];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && inflater.needsInput()) {
+                    throw new DataFormatException("Truncated question");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static class Cursor {
+        private final String data;
+        private int position;
+
+        Cursor(String data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        String next() {
+            int colon = data.indexOf(':', position);
+            int length = Integer.parseInt(data, position, colon, 10);
+            position = colon + 1;
+            if (length < 0) {
+                return null;
+            }
+            String value = data.substring(position, position + length);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package trivia.repository;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bit set indexed by player ordinal that many threads can set without locking. Bits are kept in fixed size pages
+ * that are never copied, so growing the set can't lose a concurrent update. Only adding a page locks.
+ */
+class ConcurrentBitSet {
+
+    private static final int WORDS_PER_PAGE = 64;
+    private static final int BITS_PER_PAGE = WORDS_PER_PAGE * Long.SIZE;
+
+    private volatile AtomicLongArray[] pages = new AtomicLongArray[1];
+
+    /**
+     * @return true if the bit was clear and this call set it
+     */
+    boolean set(int index) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Negative index " + index);
+        }
+        AtomicLongArray page = page(index / BITS_PER_PAGE);
+        long mask = 1L << index;
+        return (page.getAndAccumulate(wordIndex(index), mask, (word, bit) -> word | bit) & mask) == 0;
+    }
+
+    /**
+     * Set every bit set in a Redis bitmap, which numbers the bits of each byte from the most significant
+     */
+    void setAll(byte[] bitmap) {
+        for (int i = 0; i < bitmap.length; i++) {
+            for (int bit = 0; bitmap[i] != 0 && bit < Byte.SIZE; bit++) {
+                if ((bitmap[i] & (0x80 >>> bit)) != 0) {
+                    set(i * Byte.SIZE + bit);
+                }
+            }
+        }
+    }
+
+    boolean get(int index) {
+        if (index < 0) {
+            return false;
+        }
+        AtomicLongArray[] pages = this.pages;
+        int p = index / BITS_PER_PAGE;
+        AtomicLongArray page = p < pages.length ? pages[p] : null;
+        return page != null && (page.get(wordIndex(index)) & (1L << index)) != 0;
+    }
+
+    int cardinality() {
+        int count = 0;
+        for (AtomicLongArray page : pages) {
+            for (int i = 0; page != null && i < WORDS_PER_PAGE; i++) {
+                count += Long.bitCount(page.get(i));
+            }
+        }
+        return count;
+    }
+
+    private AtomicLongArray page(int p) {
+        AtomicLongArray[] pages = this.pages;
+        if (p < pages.length && pages[p] != null) {
+            return pages[p];
+        }
+        synchronized (this) {
+            pages = this.pages;
+            if (p >= pages.length) {
+                pages = Arrays.copyOf(pages, Math.max(p + 1, pages.length * 2));
+            }
+            if (pages[p] == null) {
+                pages[p] = new AtomicLongArray(WORDS_PER_PAGE);
+            }
+            // the volatile write publishes the new page
+            this.pages = pages;
+            return pages[p];
+        }
+    }
+
+    private static int wordIndex(int index) {
+        return (index % BITS_PER_PAGE) >>> 6;
+    }
+}
@@ -0,0 +1,66 @@
+package trivia.repository;
+
+import io.lettuce.core.api.reactive.RedisStringReactiveCommands;
+import reactor.core.publisher.Mono;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands out game ids from a block reserved with a single INCRBY, so only one in every {@code blockSize} games pays
+ * the round trip. Ids stay unique across nodes, unused ids in a block are lost when the node stops.
+ */
+class GameIdAllocator {
+
+    private final String key;
+    private final int blockSize;
+    private final AtomicReference<Block> block = new AtomicReference<>(new Block(1, 0));
+    private Mono<Block> reserving;
+
+    GameIdAllocator(String key, int blockSize) {
+        this.key = Objects.requireNonNull(key);
+        this.blockSize = blockSize;
+    }
+
+    Mono<Long> nextId(RedisStringReactiveCommands<String, String> commands) {
+        return Mono.defer(() -> {
+            long id = block.get().take();
+            if (id > 0) {
+                return Mono.just(id);
+            }
+            return reserve(commands).then(nextId(commands));
+        });
+    }
+
+    private synchronized Mono<Block> reserve(RedisStringReactiveCommands<String, String> commands) {
+        // share one INCRBY between all callers that find the block exhausted
+        if (reserving == null) {
+            reserving = commands.incrby(key, blockSize)
+                .map(max -> new Block(max - blockSize + 1, max))
+                .doOnNext(block::set)
+                .doFinally(s -> clearReserving())
+                .cache();
+        }
+        return reserving;
+    }
+
+    private synchronized void clearReserving() {
+        reserving = null;
+    }
+
+    private static class Block {
+        private final AtomicLong next;
+        private final long max;
+
+        Block(long first, long max) {
+            this.next = new AtomicLong(first);
+            this.max = max;
+        }
+
+        long take() {
+            long id = next.getAndIncrement();
+            return id <= max ? id : -1;
+        }
+    }
+}
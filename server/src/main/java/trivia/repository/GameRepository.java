@@ -2,16 +2,27 @@ package trivia.repository;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import trivia.domain.AnswerKey;
+import trivia.domain.Difficulty;
 import trivia.domain.Game;
 import trivia.domain.Question;
 import trivia.domain.RoundEvent;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
 
 
 public interface GameRepository {
 
+    /**
+     * Save a question and register its category
+     * @return 1 if the question was added, 0 if it already exists. An {@link IllegalArgumentException} if the
+     * question offers more than {@link trivia.domain.AnswerOptions#MAX_SIZE} answers.
+     */
     Mono<Long> save(Question question);
 
     /**
@@ -28,13 +39,38 @@ public interface GameRepository {
     Flux<Question> findQuestionsInCategory(String category, int n);
 
     /**
-     * Find questions in a category, and set the weight of the question so that it's sorted to the bottom so that the
-     * same question will not be returned over and over.
+     * Allocate questions in a category to a game, favouring the questions allocated longest ago. Allocated questions
+     * are sorted to the bottom, atomically, so that the same question will not be returned over and over.
      * @param category the category to search
      * @param n the maximum number to return
      */
     Flux<Question> allocateQuestions(String category, int n);
 
+    /**
+     * Allocate a question of the given difficulty to each round of a game, from indexes of the category by difficulty,
+     * favouring the questions allocated longest ago as above.
+     * @param category the category to search
+     * @param rounds the difficulty of each round
+     * @return the questions in round order, skipping rounds the category has too few questions of that difficulty for
+     */
+    Flux<Question> allocateQuestions(String category, List<Difficulty> rounds);
+
+    /**
+     * Sample questions in a category as {@link #allocateQuestions(String, int)} does, without allocating them, to
+     * choose a game's questions from. Concurrent samples may return the same questions.
+     * @param category the category to search
+     * @param n the maximum number to return
+     */
+    Flux<Question> sampleQuestions(String category, int n);
+
+    /**
+     * Allocate questions chosen from a sample, so later allocations and samples move on to others
+     */
+    Mono<Void> allocateSampled(String category, List<Question> questions);
+
+    /**
+     * List the registered categories, in no particular order
+     */
     Flux<String> listCategories();
 
     /**
@@ -46,8 +82,10 @@ public interface GameRepository {
     Mono<Game> findGame(String gameId);
 
     /**
-     * Add a player to the game
-     * @return the new total number of players
+     * Add a player to the game, and to the player's seen questions. Joining again adds nothing, but writes the seen
+     * questions again, so a join that failed after the player was added can be retried.
+     * @return the game with the new total number of players, empty if the player already joined or the game is missing
+     * or started
      */
     Mono<Game> addPlayer(String gameId, String username);
 
@@ -55,27 +93,116 @@ public interface GameRepository {
     * Find pending games with a least the given number of joined players.
      * @param delayStartRound how long between rounds
      * @param minPlayers min number of player needed to start a game
+     * @param batchSize the maximum number of games to start, per shard of the repository
+     * @return the number of games started
      */
-    void startPendingGames(Duration delayStartRound, int minPlayers);
+    int startPendingGames(Duration delayStartRound, int minPlayers, int batchSize);
 
     /**
      * Find pending rounds to start or complete
      * @param delayStartRound how long between rounds
      * @param roundDuration how long a round should s
+     * @param batchSize the maximum number of rounds to start or complete, per shard of the repository
+     * @return the number of rounds started or completed
+     */
+    int advancePendingRounds(Duration delayStartRound, Duration roundDuration, int batchSize);
+
+    /**
+     * Find when the next delayed round to start or complete is due, of the shards this node schedules, as of the
+     * last {@link #advancePendingRounds} and {@link #startPendingGames}
+     * @return when it is due, or empty if no round is waiting
+     */
+    Optional<Instant> findNextRoundDue();
+
+    /**
+     * Wake the scheduler of the node that schedules the game's shard, e.g. when the game has enough players to start
+     */
+    Mono<Void> wakeScheduler(String gameId);
+
+    /**
+     * Receive the shard of each scheduler wakeup for the shards this node schedules
+     */
+    Flux<Integer> subscribeToSchedulerWakeups();
+
+    /**
+     * Forget pending games that were abandoned before they had enough players to start
+     * @param batchSize the number of pending games to check per round trip
+     * @return the number of games removed
      */
-    void advancePendingRounds(Duration delayStartRound, Duration roundDuration);
+    int sweepAbandonedGames(int batchSize);
+
+    /**
+     * Find the round a game is currently on
+     * @return the round, or empty if the game is not started
+     */
+    Mono<Integer> findCurrentRound(String gameId);
+
+    /**
+     * Find the answer key of the round a game is currently on, kept on this node once loaded
+     * @return the answer key, or empty if the game is not started
+     */
+    Mono<AnswerKey> findAnswerKey(String gameId);
 
     /**
      * Find game question for the given round
      */
     Mono<Question> findQuestionForRound(String gameId, int round);
 
-    void countAnswer(String gameId, int round, String answer);
+    /**
+     * Count an answer to a round
+     * @param option the index of the answer in the round's answer options
+     * @throws IllegalArgumentException if the option is negative or more than a question can offer
+     */
+    void countAnswer(String gameId, int round, int option);
+
+    /**
+     * Count the answers given in a round so far, including the answers counted by this node that are not written yet.
+     * Answers counted by other nodes are only included once they write them behind, so while the round is running
+     * the counts may lag and differ between nodes. They converge once the round is complete and every node has
+     * written its counts.
+     * @param options the number of answer options of the round
+     * @return the number of times each option was given, indexed by option
+     */
+    Mono<int[]> findAnswerCounts(String gameId, int round, int options);
+
+    /**
+     * Find the questions any of the players were dealt before, from a Bloom filter per player. The questions of each
+     * game a player joins are added to their filter.
+     * @return whether any of the players may have seen a question, rarely true for one they haven't
+     */
+    Mono<Predicate<Question>> findSeenQuestions(Collection<String> usernames);
+
+    /**
+     * Find the ordinal of a player, players are numbered from 0 in the order they join a game
+     * @return the ordinal, or empty if the player is not in the game
+     */
+    Mono<Integer> findPlayer(String gameId, String username);
+
+    /**
+     * Record that a player answered a round, checked on this node without waiting on the repository once the game's
+     * players are loaded. Every answer is recorded before it is checked, so a late or invalid answer also uses up the
+     * player's answer to the round, and the game service then eliminates the player for it.
+     * @return false if the player was eliminated or already answered the round, the answer must then be dropped
+     */
+    Mono<Boolean> markAnswered(String gameId, int round, int player);
+
+    /**
+     * Eliminate a player from a game, they can't answer again and are not counted in the players of later rounds
+     */
+    void eliminatePlayer(String gameId, int player);
 
+    /**
+     * Find the number of players still in the game when a round started
+     */
     Mono<Integer> findPlayerCount(String gameId, int round);
 
     Flux<String> subscribeToGameChannel();
 
     Flux<RoundEvent> subscribeToRoundsChannel();
 
+    /**
+     * Receive the name of each category when it is first registered
+     */
+    Flux<String> subscribeToCategoriesChannel();
+
 }
@@ -0,0 +1,622 @@
+package trivia.repository;
+
+import io.micronaut.context.annotation.Requires;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import trivia.domain.AnswerKey;
+import trivia.domain.AnswerOptions;
+import trivia.domain.Difficulty;
+import trivia.domain.Game;
+import trivia.domain.Question;
+import trivia.domain.RoundEvent;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps all game state in process. Intended for single node deployments and for tests that should not need Redis.
+ * Select it with {@code trivia.repository: memory}.
+ */
+@Slf4j
+@Requires(property = "trivia.repository", value = "memory")
+@Singleton
+public class InMemoryGameRepository implements GameRepository {
+
+    // players whose seen questions are kept, 512 bytes each, the players seen longest ago are forgotten first
+    static final int MAX_SEEN_PLAYERS = 10_000;
+
+    private final ConcurrentMap<String, Category> categories = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, GameState> games = new ConcurrentHashMap<>();
+    // game id -> number of players, the equivalent of the pending games sorted set
+    private final ConcurrentMap<String, Integer> pendingGames = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<DelayedRound> delayedRounds = new ConcurrentSkipListSet<>();
+    private final NearCache<String, SeenQuestions> seenQuestions = new NearCache<>(MAX_SEEN_PLAYERS);
+
+    private final Duration pendingGameTtl;
+    private final Duration finishedGameTtl;
+
+    private final AtomicLong gameIds = new AtomicLong();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final FluxSink<String> gameChannel;
+    private final FluxSink<RoundEvent> roundsChannel;
+    private final FluxSink<String> categoriesChannel;
+    private final FluxSink<Integer> schedulerChannel;
+    private final Flux<String> gameEvents;
+    private final Flux<RoundEvent> roundEvents;
+    private final Flux<String> categoryEvents;
+    private final Flux<Integer> schedulerWakeups;
+
+    @Inject
+    public InMemoryGameRepository() {
+        this(Duration.ofHours(1), Duration.ofMinutes(10));
+    }
+
+    /**
+     * @param pendingGameTtl how long a game can wait for players before it is abandoned
+     * @param finishedGameTtl how long a game is kept once its last round completes
+     */
+    public InMemoryGameRepository(Duration pendingGameTtl, Duration finishedGameTtl) {
+        this.pendingGameTtl = Objects.requireNonNull(pendingGameTtl);
+        this.finishedGameTtl = Objects.requireNonNull(finishedGameTtl);
+        DirectProcessor<String> games = DirectProcessor.create();
+        DirectProcessor<RoundEvent> rounds = DirectProcessor.create();
+        DirectProcessor<String> categories = DirectProcessor.create();
+        DirectProcessor<Integer> wakeups = DirectProcessor.create();
+        this.gameChannel = games.sink();
+        this.roundsChannel = rounds.sink();
+        this.categoriesChannel = categories.sink();
+        this.schedulerChannel = wakeups.sink();
+        this.gameEvents = games;
+        this.roundEvents = rounds;
+        this.categoryEvents = categories;
+        this.schedulerWakeups = wakeups;
+    }
+
+    @Override
+    public Mono<Long> save(Question question) {
+        if (!AnswerTally.canCount(question)) {
+            return Mono.error(new IllegalArgumentException("Question offers more than " + AnswerTally.MAX_OPTIONS
+                + " answers: " + question.getText()));
+        }
+        return Mono.fromSupplier(() -> {
+            Category c = category(question.getCategory());
+            if (!c.add(question, sequence.incrementAndGet())) {
+                return 0L;
+            }
+            if (c.registered.compareAndSet(false, true)) {
+                categoriesChannel.next(question.getCategory());
+            }
+            return 1L;
+        });
+    }
+
+    @Override
+    public Flux<Question> findQuestionsInCategory(String category) {
+        return findQuestionsInCategory(category, -1);
+    }
+
+    @Override
+    public Flux<Question> findQuestionsInCategory(String category, int stop) {
+        // same inclusive range semantics as ZRANGE
+        return Flux.defer(() -> {
+            Category c = categories.get(category);
+            if (c == null) {
+                return Flux.empty();
+            }
+            var found = c.index.stream().map(s -> s.question);
+            return Flux.fromStream(stop < 0 ? found : found.limit(stop + 1L));
+        });
+    }
+
+    @Override
+    public Flux<Question> allocateQuestions(String category, int n) {
+        return Flux.defer(() -> {
+            Category c = categories.get(category);
+            if (c == null) {
+                return Flux.empty();
+            }
+            Set<Question> allocated = new LinkedHashSet<>();
+            allocate(c, c.index, n, Instant.now().toEpochMilli(), allocated);
+            return Flux.fromIterable(allocated);
+        });
+    }
+
+    @Override
+    public Flux<Question> allocateQuestions(String category, List<Difficulty> rounds) {
+        return Flux.defer(() -> {
+            Category c = categories.get(category);
+            if (c == null) {
+                return Flux.empty();
+            }
+            double timestamp = Instant.now().toEpochMilli();
+            Set<Question> allocated = new LinkedHashSet<>();
+            for (Difficulty d : rounds) {
+                allocate(c, c.difficultyIndex(d), 1, timestamp, allocated);
+            }
+            return Flux.fromIterable(allocated);
+        });
+    }
+
+    @Override
+    public Flux<Question> sampleQuestions(String category, int n) {
+        return Flux.defer(() -> {
+            Category c = categories.get(category);
+            if (c == null) {
+                return Flux.empty();
+            }
+            return Flux.fromIterable(c.index).take(n).map(scored -> scored.question);
+        });
+    }
+
+    @Override
+    public Mono<Void> allocateSampled(String category, List<Question> questions) {
+        return Mono.fromRunnable(() -> {
+            Category c = categories.get(category);
+            if (c == null) {
+                return;
+            }
+            double timestamp = Instant.now().toEpochMilli();
+            for (Question q : questions) {
+                Scored current = c.members.get(q);
+                // lost to a concurrent allocation, which moved it already
+                if (current != null) {
+                    c.rescore(current, timestamp, sequence.incrementAndGet());
+                }
+            }
+        });
+    }
+
+    private void allocate(Category c, Collection<Scored> index, int n, double timestamp, Set<Question> allocated) {
+        int wanted = allocated.size() + n;
+        for (Scored candidate : index) {
+            if (allocated.size() == wanted) {
+                break;
+            }
+            // the iteration can meet a question it rescored again, at its new score. Like the script, an allocation
+            // never deals a question twice, it comes up short when the category has too few.
+            if (allocated.contains(candidate.question)) {
+                continue;
+            }
+            // removing the entry claims it, so concurrent allocations never hand out the same question
+            if (c.rescore(candidate, timestamp, sequence.incrementAndGet())) {
+                allocated.add(candidate.question);
+            }
+        }
+    }
+
+    @Override
+    public Flux<String> listCategories() {
+        return Flux.defer(() -> Flux.fromIterable(categories.entrySet().stream()
+            .filter(e -> e.getValue().registered.get())
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList())));
+    }
+
+    @Override
+    public Mono<String> createGame(String title, List<Question> questions) {
+        return Mono.fromSupplier(() -> {
+            String gameId = String.valueOf(gameIds.incrementAndGet());
+            games.put(gameId, new GameState(title, questions, Instant.now().toEpochMilli()));
+            return gameId;
+        });
+    }
+
+    @Override
+    public Mono<Game> findGame(String gameId) {
+        return Mono.fromSupplier(() -> {
+            GameState g = games.get(gameId);
+            return g == null ? null : g.toGame(gameId);
+        });
+    }
+
+    @Override
+    public Mono<Game> addPlayer(String gameId, String username) {
+        return Mono.fromSupplier(() -> {
+            GameState g = games.get(gameId);
+            if (g == null || g.started.get() || !g.join(username)) {
+                return null;
+            }
+            SeenQuestions seen = seenQuestions.computeIfAbsent(username, k -> new SeenQuestions());
+            synchronized (seen) {
+                g.questions.forEach(q -> seen.add(QuestionId.of(q)));
+            }
+            Game game = g.toGame(gameId);
+            pendingGames.put(gameId, game.getPlayers());
+            if (g.started.get()) {
+                // the game started while joining, it must not be pending again
+                pendingGames.remove(gameId);
+            }
+            log.debug("Added player[{}] to Game[{}]", username, gameId);
+            return game;
+        });
+    }
+
+    @Override
+    public int startPendingGames(Duration roundStartDelay, int minPlayers, int batchSize) {
+        int started = 0;
+        for (Map.Entry<String, Integer> pending : pendingGames.entrySet()) {
+            if (started == batchSize) {
+                break;
+            }
+            String gameId = pending.getKey();
+            // only the caller that removes the entry starts the game
+            if (pending.getValue() >= minPlayers && pendingGames.remove(gameId, pending.getValue())) {
+                GameState g = games.get(gameId);
+                if (g == null || !g.started.compareAndSet(false, true)) {
+                    continue;
+                }
+                enqueue(RoundEvent.builder()
+                    .gameId(gameId)
+                    .round(0)
+                    .started(true)
+                    .build(), roundStartDelay);
+                gameChannel.next(gameId);
+                started++;
+            }
+        }
+        return started;
+    }
+
+    @Override
+    public int advancePendingRounds(Duration roundStartDelay, Duration roundDuration, int batchSize) {
+        final long now = Instant.now().toEpochMilli();
+        int advanced = 0;
+        DelayedRound next;
+        while (advanced < batchSize && (next = delayedRounds.ceiling(DelayedRound.FIRST)) != null && next.due <= now) {
+            if (!delayedRounds.remove(next)) {
+                continue; // claimed by another caller
+            }
+            RoundEvent roundEvent = next.event;
+            GameState g = games.get(roundEvent.getGameId());
+            if (g == null) {
+                continue;
+            }
+            if (roundEvent.getStarted()) {
+                if (roundEvent.getRound() < g.questions.size()) {
+                    var options = AnswerOptions.of(g.questions.get(roundEvent.getRound()), roundEvent.getGameId(), roundEvent.getRound());
+                    g.answerKey = AnswerKey.builder()
+                        .round(roundEvent.getRound())
+                        .correctIndex(options.getCorrectIndex())
+                        .options(options.size())
+                        .opensAt(now)
+                        .closesAt(now + roundDuration.toMillis())
+                        .build();
+                }
+                g.round = roundEvent.getRound();
+                g.roundPlayers.put(roundEvent.getRound(), g.players.size() - g.playerBits.eliminated());
+                enqueue(RoundEvent.builder()
+                    .gameId(roundEvent.getGameId())
+                    .round(roundEvent.getRound())
+                    .started(false)
+                    .build(), roundDuration);
+            } else {
+                int nextRoundNumber = roundEvent.getRound() + 1;
+                if (nextRoundNumber < g.questions.size()) {
+                    enqueue(RoundEvent.builder()
+                        .gameId(roundEvent.getGameId())
+                        .round(nextRoundNumber)
+                        .started(true)
+                        .build(), roundStartDelay);
+                } else {
+                    g.finishedAt = now;
+                }
+            }
+            roundsChannel.next(roundEvent);
+            advanced++;
+        }
+        return advanced;
+    }
+
+    @Override
+    public int sweepAbandonedGames(int batchSize) {
+        // stands in for the Redis key expiry as well, so finished games are removed here too
+        final long now = Instant.now().toEpochMilli();
+        int removed = 0;
+        for (Map.Entry<String, GameState> entry : games.entrySet()) {
+            if (removed == batchSize) {
+                break;
+            }
+            GameState g = entry.getValue();
+            boolean abandoned = !g.started.get() && g.createdAt + pendingGameTtl.toMillis() <= now;
+            boolean expired = g.finishedAt > 0 && g.finishedAt + finishedGameTtl.toMillis() <= now;
+            if ((abandoned || expired) && games.remove(entry.getKey(), g)) {
+                pendingGames.remove(entry.getKey());
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public Mono<Integer> findCurrentRound(String gameId) {
+        return Mono.fromSupplier(() -> {
+            GameState g = games.get(gameId);
+            return g == null ? null : g.round;
+        });
+    }
+
+    @Override
+    public Mono<AnswerKey> findAnswerKey(String gameId) {
+        return Mono.fromSupplier(() -> {
+            GameState g = games.get(gameId);
+            return g == null ? null : g.answerKey;
+        });
+    }
+
+    @Override
+    public Mono<Question> findQuestionForRound(String gameId, int round) {
+        return Mono.fromSupplier(() -> {
+            GameState g = games.get(gameId);
+            return g == null || round < 0 || round >= g.questions.size() ? null : g.questions.get(round);
+        });
+    }
+
+    @Override
+    public void countAnswer(String gameId, int round, int option) {
+        // checked like the answer tally the Redis repository counts in
+        if (option < 0 || option >= AnswerTally.MAX_OPTIONS) {
+            throw new IllegalArgumentException("No such answer option " + option);
+        }
+        GameState g = games.get(gameId);
+        if (g != null) {
+            g.answers.computeIfAbsent(round, k -> newCounters())[option].increment();
+        }
+    }
+
+    @Override
+    public Mono<int[]> findAnswerCounts(String gameId, int round, int options) {
+        return Mono.fromSupplier(() -> {
+            GameState g = games.get(gameId);
+            LongAdder[] counters = g == null ? null : g.answers.get(round);
+            int[] counts = new int[options];
+            for (int option = 0; counters != null && option < Math.min(options, counters.length); option++) {
+                counts[option] = counters[option].intValue();
+            }
+            return counts;
+        });
+    }
+
+    private static LongAdder[] newCounters() {
+        LongAdder[] counters = new LongAdder[AnswerTally.MAX_OPTIONS];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        return counters;
+    }
+
+    @Override
+    public Mono<Predicate<Question>> findSeenQuestions(Collection<String> usernames) {
+        return Mono.fromSupplier(() -> {
+            List<SeenQuestions> players = new ArrayList<>(usernames.size());
+            for (String username : usernames) {
+                SeenQuestions seen = seenQuestions.get(username);
+                if (seen != null) {
+                    players.add(seen);
+                }
+            }
+            return SeenQuestions.anyOf(players);
+        });
+    }
+
+    @Override
+    public Mono<Integer> findPlayer(String gameId, String username) {
+        return Mono.fromSupplier(() -> {
+            GameState g = games.get(gameId);
+            return g == null ? null : g.players.get(username);
+        });
+    }
+
+    @Override
+    public Mono<Boolean> markAnswered(String gameId, int round, int player) {
+        GameState g = games.get(gameId);
+        return Mono.just(g != null && g.playerBits.answer(round, player));
+    }
+
+    @Override
+    public void eliminatePlayer(String gameId, int player) {
+        GameState g = games.get(gameId);
+        if (g != null) {
+            g.playerBits.eliminate(player);
+        }
+    }
+
+    @Override
+    public Mono<Integer> findPlayerCount(String gameId, int round) {
+        return Mono.fromSupplier(() -> {
+            GameState g = games.get(gameId);
+            return g == null ? null : g.roundPlayers.get(round);
+        });
+    }
+
+    @Override
+    public Optional<Instant> findNextRoundDue() {
+        DelayedRound next = delayedRounds.ceiling(DelayedRound.FIRST);
+        return next == null ? Optional.empty() : Optional.of(Instant.ofEpochMilli(next.due));
+    }
+
+    @Override
+    public Mono<Void> wakeScheduler(String gameId) {
+        // one shard
+        return Mono.fromRunnable(() -> schedulerChannel.next(0));
+    }
+
+    @Override
+    public Flux<Integer> subscribeToSchedulerWakeups() {
+        return schedulerWakeups;
+    }
+
+    @Override
+    public Flux<String> subscribeToGameChannel() {
+        return gameEvents;
+    }
+
+    @Override
+    public Flux<RoundEvent> subscribeToRoundsChannel() {
+        return roundEvents;
+    }
+
+    @Override
+    public Flux<String> subscribeToCategoriesChannel() {
+        return categoryEvents;
+    }
+
+    private void enqueue(RoundEvent event, Duration delay) {
+        long due = Instant.now().plusMillis(delay.toMillis()).toEpochMilli();
+        delayedRounds.add(new DelayedRound(due, sequence.incrementAndGet(), event));
+    }
+
+    private Category category(String name) {
+        return categories.computeIfAbsent(name, k -> new Category());
+    }
+
+    /**
+     * Questions in a category ordered by score, the equivalent of the question sorted set, and the same by difficulty.
+     */
+    private static class Category {
+        private final ConcurrentMap<Question, Scored> members = new ConcurrentHashMap<>();
+        private final ConcurrentSkipListSet<Scored> index = new ConcurrentSkipListSet<>();
+        private final Map<Difficulty, ConcurrentSkipListSet<Scored>> difficultyIndexes = new EnumMap<>(Difficulty.class);
+        private final AtomicBoolean registered = new AtomicBoolean();
+
+        Category() {
+            for (Difficulty d : Difficulty.values()) {
+                difficultyIndexes.put(d, new ConcurrentSkipListSet<>());
+            }
+        }
+
+        Collection<Scored> difficultyIndex(Difficulty difficulty) {
+            return difficultyIndexes.get(difficulty);
+        }
+
+        boolean add(Question question, long seq) {
+            Scored scored = new Scored(1, seq, question);
+            if (members.putIfAbsent(question, scored) != null) {
+                return false;
+            }
+            index.add(scored);
+            if (question.getDifficulty() != null) {
+                difficultyIndexes.get(question.getDifficulty()).add(scored);
+            }
+            return true;
+        }
+
+        /**
+         * Claim a question from the category index and move it to a new score, in its difficulty index as well
+         */
+        boolean rescore(Scored current, double score, long seq) {
+            if (!index.remove(current)) {
+                return false;
+            }
+            Scored scored = new Scored(score, seq, current.question);
+            members.put(current.question, scored);
+            index.add(scored);
+            if (current.question.getDifficulty() != null) {
+                var difficultyIndex = difficultyIndexes.get(current.question.getDifficulty());
+                difficultyIndex.remove(current);
+                difficultyIndex.add(scored);
+            }
+            return true;
+        }
+    }
+
+    private static class Scored implements Comparable<Scored> {
+        private static final Comparator<Scored> ORDER = Comparator.<Scored>comparingDouble(s -> s.score)
+            .thenComparingLong(s -> s.seq);
+
+        private final double score;
+        private final long seq;
+        private final Question question;
+
+        Scored(double score, long seq, Question question) {
+            this.score = score;
+            this.seq = seq;
+            this.question = question;
+        }
+
+        @Override
+        public int compareTo(Scored o) {
+            return ORDER.compare(this, o);
+        }
+    }
+
+    private static class DelayedRound implements Comparable<DelayedRound> {
+        private static final DelayedRound FIRST = new DelayedRound(Long.MIN_VALUE, Long.MIN_VALUE, null);
+        private static final Comparator<DelayedRound> ORDER = Comparator.<DelayedRound>comparingLong(d -> d.due)
+            .thenComparingLong(d -> d.seq);
+
+        private final long due;
+        private final long seq;
+        private final RoundEvent event;
+
+        DelayedRound(long due, long seq, RoundEvent event) {
+            this.due = due;
+            this.seq = seq;
+            this.event = event;
+        }
+
+        @Override
+        public int compareTo(DelayedRound o) {
+            return ORDER.compare(this, o);
+        }
+    }
+
+    private static class GameState {
+        private final String title;
+        private final List<Question> questions;
+        // username -> ordinal, in join order
+        private final ConcurrentMap<String, Integer> players = new ConcurrentHashMap<>();
+        private final PlayerBits playerBits = new PlayerBits();
+        private final ConcurrentMap<Integer, Integer> roundPlayers = new ConcurrentHashMap<>();
+        // striped counters by round, indexed by answer option
+        private final ConcurrentMap<Integer, LongAdder[]> answers = new ConcurrentHashMap<>();
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final long createdAt;
+        private volatile Integer round;
+        private volatile AnswerKey answerKey;
+        private volatile long finishedAt;
+
+        GameState(String title, List<Question> questions, long createdAt) {
+            this.title = Objects.requireNonNull(title);
+            this.questions = List.copyOf(questions);
+            this.createdAt = createdAt;
+        }
+
+        synchronized boolean join(String username) {
+            return players.putIfAbsent(username, players.size()) == null;
+        }
+
+        Game toGame(String gameId) {
+            return Game.builder()
+                .id(gameId)
+                .title(title)
+                .round(round)
+                .players(players.size())
+                .finished(finishedAt > 0)
+                .build();
+        }
+    }
+}
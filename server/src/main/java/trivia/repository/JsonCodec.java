@@ -0,0 +1,53 @@
+package trivia.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import trivia.domain.Question;
+import trivia.domain.RoundEvent;
+
+import java.util.Objects;
+
+class JsonCodec implements RecordCodec {
+
+    private final ObjectMapper mapper;
+
+    JsonCodec(ObjectMapper mapper) {
+        this.mapper = Objects.requireNonNull(mapper);
+    }
+
+    @Override
+    public Question decodeQuestion(String data) {
+        try {
+            return mapper.readValue(data, Question.class);
+        } catch (JsonProcessingException e) {
+            throw new RepositoryExpection("Failed to decode Question from repository", e);
+        }
+    }
+
+    @Override
+    public String encodeQuestion(Question q) {
+        try {
+            return mapper.writeValueAsString(q);
+        } catch (JsonProcessingException e) {
+            throw new RepositoryExpection("Failed to encode Question to repository", e);
+        }
+    }
+
+    @Override
+    public RoundEvent decodeRoundEvent(String data) {
+        try {
+            return mapper.readValue(data, RoundEvent.class);
+        } catch (JsonProcessingException e) {
+            throw new RepositoryExpection("Failed to decode RoundEvent from repository: " + data, e);
+        }
+    }
+
+    @Override
+    public String encodeRoundEvent(RoundEvent r) {
+        try {
+            return mapper.writeValueAsString(r);
+        } catch (JsonProcessingException e) {
+            throw new RepositoryExpection("Failed to encode RoundEvent to repository", e);
+        }
+    }
+}
@@ -1,53 +1,62 @@
 package trivia.repository;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import trivia.domain.Question;
 import trivia.domain.RoundEvent;
 
+import javax.inject.Inject;
 import javax.inject.Singleton;
-import java.util.Objects;
 
+/**
+ * Encodes repository records with the configured {@link CodecFormat}. Records are decoded from either format, JSON
+ * records always start with a brace, so both can be read while a deployment migrates from one to the other.
+ */
 @Slf4j
 @Singleton
 public class JsonEncoder {
 
-    private final ObjectMapper mapper;
+    private final CodecFormat format;
+    private final RecordCodec json;
+    private final RecordCodec compact;
+    private final RecordCodec writer;
 
     public JsonEncoder(ObjectMapper mapper) {
-        this.mapper = Objects.requireNonNull(mapper);
+        this(mapper, new RedisConfig());
+    }
+
+    @Inject
+    public JsonEncoder(ObjectMapper mapper, RedisConfig config) {
+        this.format = config.getCodec();
+        this.json = new JsonCodec(mapper);
+        this.compact = new CompactCodec(config.isCompressQuestions());
+        this.writer = format == CodecFormat.compact ? compact : json;
+    }
+
+    /**
+     * The format written by this node, the Lua scripts write round events in the same format.
+     */
+    CodecFormat getFormat() {
+        return format;
     }
 
     Question decodeQuestion(String data) {
-        try {
-            return mapper.readValue(data, Question.class);
-        } catch (JsonProcessingException e) {
-            throw new RepositoryExpection("Failed to decode Question from repository", e);
-        }
-    }
-
-     String encodeQuestion(Question q) {
-        try {
-            return mapper.writeValueAsString(q);
-        } catch (JsonProcessingException e) {
-            throw new RepositoryExpection("Failed to encode Question to repository", e);
-        }
-    }
-
-     RoundEvent decodeRoundEvent(String data) {
-        try {
-            return mapper.readValue(data, RoundEvent.class);
-        } catch (JsonProcessingException e) {
-            throw new RepositoryExpection("Failed to decode RoundEvent from repository: " + data, e);
-        }
-    }
-
-     String encodeRoundEvent(RoundEvent r) {
-        try {
-            return mapper.writeValueAsString(r);
-        } catch (JsonProcessingException e) {
-            throw new RepositoryExpection("Failed to encode RoundEvent to repository", e);
-        }
+        return reader(data).decodeQuestion(data);
+    }
+
+    String encodeQuestion(Question q) {
+        return writer.encodeQuestion(q);
+    }
+
+    RoundEvent decodeRoundEvent(String data) {
+        return reader(data).decodeRoundEvent(data);
+    }
+
+    String encodeRoundEvent(RoundEvent r) {
+        return writer.encodeRoundEvent(r);
+    }
+
+    private RecordCodec reader(String data) {
+        return data != null && !data.isEmpty() && data.charAt(0) == '{' ? json : compact;
     }
 }
@@ -0,0 +1,73 @@
+package trivia.repository;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * A bounded, node-local cache. Reads never lock. Once full, the oldest entries are evicted first, which suits
+ * games since the oldest are the first to finish.
+ */
+class NearCache<K, V> {
+
+    private final int capacity;
+    private final ConcurrentMap<K, V> entries = new ConcurrentHashMap<>();
+    private final Queue<K> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    NearCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    V get(K key) {
+        return entries.get(key);
+    }
+
+    V computeIfAbsent(K key, Function<K, V> factory) {
+        V value = entries.get(key);
+        if (value != null) {
+            return value;
+        }
+        boolean[] created = new boolean[1];
+        value = entries.computeIfAbsent(key, k -> {
+            created[0] = true;
+            return factory.apply(k);
+        });
+        if (created[0]) {
+            insertionOrder.add(key);
+            queued.incrementAndGet();
+            evict();
+        }
+        return value;
+    }
+
+    void remove(K key) {
+        entries.remove(key);
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void evict() {
+        // the queue also holds keys that were removed explicitly, so it is bounded separately
+        while (entries.size() > capacity || queued.get() > capacity * 2) {
+            K oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            entries.remove(oldest);
+        }
+    }
+}
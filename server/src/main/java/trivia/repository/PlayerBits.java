@@ -0,0 +1,71 @@
+package trivia.repository;
+
+/**
+ * The players of a game that were eliminated, and that answered the current round, by player ordinal. Kept on the
+ * node the players are connected to, so a duplicate answer or an answer from an eliminated player is dropped
+ * without asking the repository.
+ */
+class PlayerBits {
+
+    private final ConcurrentBitSet eliminated = new ConcurrentBitSet();
+    private volatile RoundBits current;
+
+    /**
+     * Load the bits written to Redis, as bitmaps where a player's bit is at their ordinal
+     */
+    static PlayerBits of(byte[] eliminated, int round, byte[] answered) {
+        PlayerBits bits = new PlayerBits();
+        bits.eliminated.setAll(eliminated);
+        RoundBits current = new RoundBits(round);
+        current.answered.setAll(answered);
+        bits.current = current;
+        return bits;
+    }
+
+    /**
+     * Record that a player answered a round
+     * @return false if the player was eliminated, already answered the round, or the round is over
+     */
+    boolean answer(int round, int player) {
+        if (eliminated.get(player)) {
+            return false;
+        }
+        RoundBits bits = current;
+        if (bits == null || bits.round != round) {
+            bits = advanceTo(round);
+        }
+        return bits != null && bits.answered.set(player);
+    }
+
+    /**
+     * @return true if the player was not eliminated before
+     */
+    boolean eliminate(int player) {
+        return eliminated.set(player);
+    }
+
+    boolean isEliminated(int player) {
+        return eliminated.get(player);
+    }
+
+    int eliminated() {
+        return eliminated.cardinality();
+    }
+
+    private synchronized RoundBits advanceTo(int round) {
+        // only the current round is kept, rounds only move forward
+        if (current == null || current.round < round) {
+            current = new RoundBits(round);
+        }
+        return current.round == round ? current : null;
+    }
+
+    private static class RoundBits {
+        private final int round;
+        private final ConcurrentBitSet answered = new ConcurrentBitSet();
+
+        RoundBits(int round) {
+            this.round = round;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package trivia.repository;
+
+import trivia.domain.Question;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Stable id of a question, derived from its content. The same question always gets the same id, whichever codec
+ * wrote it, so it is stored once and referenced by id from categories and rounds.
+ */
+final class QuestionId {
+
+    // 64 bits, plenty for the number of questions in a category set
+    private static final int ID_BYTES = 8;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final CompactCodec CANONICAL = new CompactCodec(false);
+
+    private QuestionId() {
+    }
+
+    static String of(Question question) {
+        byte[] hash = sha256().digest(CANONICAL.encodeQuestion(question).getBytes(StandardCharsets.UTF_8));
+        char[] id = new char[ID_BYTES * 2];
+        for (int i = 0; i < ID_BYTES; i++) {
+            id[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+            id[i * 2 + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(id);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is always available", e);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package trivia.repository;
+
+import io.lettuce.core.ReadFrom;
+
+/**
+ * Where a kind of read is sent. Writes and scripts always go to the primary.
+ */
+public enum ReadRouting {
+    primary(ReadFrom.MASTER),
+    replicaPreferred(ReadFrom.REPLICA_PREFERRED),
+    nearest(ReadFrom.NEAREST);
+
+    private final ReadFrom readFrom;
+
+    ReadRouting(ReadFrom readFrom) {
+        this.readFrom = readFrom;
+    }
+
+    ReadFrom readFrom() {
+        return readFrom;
+    }
+}
@@ -0,0 +1,18 @@
+package trivia.repository;
+
+import trivia.domain.Question;
+import trivia.domain.RoundEvent;
+
+/**
+ * Encodes the records that are stored in Redis and published on its channels.
+ */
+interface RecordCodec {
+
+    Question decodeQuestion(String data);
+
+    String encodeQuestion(Question q);
+
+    RoundEvent decodeRoundEvent(String data);
+
+    String encodeRoundEvent(RoundEvent r);
+}
@@ -0,0 +1,284 @@
+package trivia.repository;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+import java.util.List;
+import javax.validation.constraints.Positive;
+
+@ConfigurationProperties("trivia.redis")
+public class RedisConfig {
+
+    @Positive
+    private int gameIdBlockSize = 100;
+
+    @Positive
+    private int nearCacheSize = 10_000;
+
+    @Positive
+    private int shards = 1;
+
+    private boolean nearCacheTracking;
+
+    @NotNull
+    private CodecFormat codec = CodecFormat.json;
+
+    private boolean compressQuestions;
+
+    @NotNull
+    private Duration pendingGameTtl = Duration.ofHours(1);
+
+    @NotNull
+    private Duration finishedGameTtl = Duration.ofMinutes(10);
+
+    @NotNull
+    private Duration seenQuestionsTtl = Duration.ofDays(30);
+
+    @NotNull
+    private List<String> replicas = List.of();
+
+    @NotNull
+    private ReadRouting questionReads = ReadRouting.primary;
+
+    @NotNull
+    private ReadRouting gameReads = ReadRouting.primary;
+
+    @Positive
+    private int hotConnections = 1;
+
+    @Positive
+    private int hotQueueSize = 10_000;
+
+    @Positive
+    private int bulkConnections = 1;
+
+    @Positive
+    private int bulkQueueSize = 100_000;
+
+    @NotNull
+    private Duration readTimeout = Duration.ofMillis(500);
+
+    @NotNull
+    private Duration writeTimeout = Duration.ofSeconds(1);
+
+    @NotNull
+    private Duration schedulerTimeout = Duration.ofSeconds(5);
+
+    @Positive
+    private int circuitFailureThreshold = 20;
+
+    @NotNull
+    private Duration circuitOpenDuration = Duration.ofSeconds(5);
+
+    private boolean shardLeases = true;
+
+    @NotNull
+    private Duration leaseDuration = Duration.ofSeconds(10);
+
+    @NotNull
+    private String journalPath = "";
+
+    @Positive
+    private int journalSize = 64 * 1024 * 1024;
+
+    public int getGameIdBlockSize() {
+        return gameIdBlockSize;
+    }
+
+    public void setGameIdBlockSize(int gameIdBlockSize) {
+        this.gameIdBlockSize = gameIdBlockSize;
+    }
+
+    public int getNearCacheSize() {
+        return nearCacheSize;
+    }
+
+    public void setNearCacheSize(int nearCacheSize) {
+        this.nearCacheSize = nearCacheSize;
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    public void setShards(int shards) {
+        this.shards = shards;
+    }
+
+    public boolean isNearCacheTracking() {
+        return nearCacheTracking;
+    }
+
+    public void setNearCacheTracking(boolean nearCacheTracking) {
+        this.nearCacheTracking = nearCacheTracking;
+    }
+
+    public CodecFormat getCodec() {
+        return codec;
+    }
+
+    public void setCodec(CodecFormat codec) {
+        this.codec = codec;
+    }
+
+    public boolean isCompressQuestions() {
+        return compressQuestions;
+    }
+
+    public void setCompressQuestions(boolean compressQuestions) {
+        this.compressQuestions = compressQuestions;
+    }
+
+    public Duration getPendingGameTtl() {
+        return pendingGameTtl;
+    }
+
+    public void setPendingGameTtl(Duration pendingGameTtl) {
+        this.pendingGameTtl = pendingGameTtl;
+    }
+
+    public Duration getFinishedGameTtl() {
+        return finishedGameTtl;
+    }
+
+    public void setFinishedGameTtl(Duration finishedGameTtl) {
+        this.finishedGameTtl = finishedGameTtl;
+    }
+
+    public Duration getSeenQuestionsTtl() {
+        return seenQuestionsTtl;
+    }
+
+    public void setSeenQuestionsTtl(Duration seenQuestionsTtl) {
+        this.seenQuestionsTtl = seenQuestionsTtl;
+    }
+
+    public List<String> getReplicas() {
+        return replicas;
+    }
+
+    public void setReplicas(List<String> replicas) {
+        this.replicas = replicas;
+    }
+
+    public ReadRouting getQuestionReads() {
+        return questionReads;
+    }
+
+    public void setQuestionReads(ReadRouting questionReads) {
+        this.questionReads = questionReads;
+    }
+
+    public ReadRouting getGameReads() {
+        return gameReads;
+    }
+
+    public void setGameReads(ReadRouting gameReads) {
+        this.gameReads = gameReads;
+    }
+
+    public int getHotConnections() {
+        return hotConnections;
+    }
+
+    public void setHotConnections(int hotConnections) {
+        this.hotConnections = hotConnections;
+    }
+
+    public int getHotQueueSize() {
+        return hotQueueSize;
+    }
+
+    public void setHotQueueSize(int hotQueueSize) {
+        this.hotQueueSize = hotQueueSize;
+    }
+
+    public int getBulkConnections() {
+        return bulkConnections;
+    }
+
+    public void setBulkConnections(int bulkConnections) {
+        this.bulkConnections = bulkConnections;
+    }
+
+    public int getBulkQueueSize() {
+        return bulkQueueSize;
+    }
+
+    public void setBulkQueueSize(int bulkQueueSize) {
+        this.bulkQueueSize = bulkQueueSize;
+    }
+
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(Duration readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public Duration getWriteTimeout() {
+        return writeTimeout;
+    }
+
+    public void setWriteTimeout(Duration writeTimeout) {
+        this.writeTimeout = writeTimeout;
+    }
+
+    public Duration getSchedulerTimeout() {
+        return schedulerTimeout;
+    }
+
+    public void setSchedulerTimeout(Duration schedulerTimeout) {
+        this.schedulerTimeout = schedulerTimeout;
+    }
+
+    public int getCircuitFailureThreshold() {
+        return circuitFailureThreshold;
+    }
+
+    public void setCircuitFailureThreshold(int circuitFailureThreshold) {
+        this.circuitFailureThreshold = circuitFailureThreshold;
+    }
+
+    public Duration getCircuitOpenDuration() {
+        return circuitOpenDuration;
+    }
+
+    public void setCircuitOpenDuration(Duration circuitOpenDuration) {
+        this.circuitOpenDuration = circuitOpenDuration;
+    }
+
+    public boolean isShardLeases() {
+        return shardLeases;
+    }
+
+    public void setShardLeases(boolean shardLeases) {
+        this.shardLeases = shardLeases;
+    }
+
+    public Duration getLeaseDuration() {
+        return leaseDuration;
+    }
+
+    public void setLeaseDuration(Duration leaseDuration) {
+        this.leaseDuration = leaseDuration;
+    }
+
+    public String getJournalPath() {
+        return journalPath;
+    }
+
+    public void setJournalPath(String journalPath) {
+        this.journalPath = journalPath;
+    }
+
+    public int getJournalSize() {
+        return journalSize;
+    }
+
+    public void setJournalSize(int journalSize) {
+        this.journalSize = journalSize;
+    }
+}
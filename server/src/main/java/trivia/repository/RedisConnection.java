@@ -0,0 +1,77 @@
+package trivia.repository;
+
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.lettuce.core.cluster.api.reactive.RedisClusterReactiveCommands;
+import io.lettuce.core.cluster.api.sync.RedisClusterCommands;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * A standalone or a cluster connection, used through the command interfaces both have. A cluster routes each command
+ * by the slot of its keys, so a command or script call must only use keys in one slot. MGET is the exception, the
+ * cluster client splits it by slot.
+ */
+class RedisConnection {
+
+    private final StatefulConnection<String, String> connection;
+    private final RedisClusterCommands<String, String> sync;
+    private final RedisClusterAsyncCommands<String, String> async;
+    private final RedisClusterReactiveCommands<String, String> reactive;
+    private final boolean cluster;
+
+    private RedisConnection(StatefulConnection<String, String> connection,
+                            RedisClusterCommands<String, String> sync,
+                            RedisClusterAsyncCommands<String, String> async,
+                            RedisClusterReactiveCommands<String, String> reactive,
+                            boolean cluster) {
+        this.connection = connection;
+        this.sync = sync;
+        this.async = async;
+        this.reactive = reactive;
+        this.cluster = cluster;
+    }
+
+    static RedisConnection of(StatefulConnection<String, String> connection) {
+        Objects.requireNonNull(connection);
+        if (connection instanceof StatefulRedisClusterConnection) {
+            var c = (StatefulRedisClusterConnection<String, String>) connection;
+            return new RedisConnection(c, c.sync(), c.async(), c.reactive(), true);
+        }
+        if (connection instanceof StatefulRedisConnection) {
+            var c = (StatefulRedisConnection<String, String>) connection;
+            return new RedisConnection(c, c.sync(), c.async(), c.reactive(), false);
+        }
+        throw new IllegalArgumentException("Unsupported connection " + connection.getClass().getName());
+    }
+
+    RedisClusterCommands<String, String> sync() {
+        return sync;
+    }
+
+    RedisClusterAsyncCommands<String, String> async() {
+        return async;
+    }
+
+    RedisClusterReactiveCommands<String, String> reactive() {
+        return reactive;
+    }
+
+    /**
+     * How long a blocking command waits for its reply
+     */
+    void setTimeout(Duration timeout) {
+        connection.setTimeout(timeout);
+    }
+
+    boolean isCluster() {
+        return cluster;
+    }
+
+    void close() {
+        connection.close();
+    }
+}
@@ -0,0 +1,262 @@
+package trivia.repository;
+
+import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.cluster.ClusterClientOptions;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.event.Event;
+import io.lettuce.core.event.connection.ConnectionActivatedEvent;
+import io.lettuce.core.masterreplica.MasterReplica;
+import io.lettuce.core.masterreplica.StatefulRedisMasterReplicaConnection;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
+import io.micronaut.configuration.lettuce.AbstractRedisConfiguration;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The connections the repository uses, to a standalone Redis or a cluster. They are split into lanes so one kind of
+ * work can't queue behind another on a shared connection:
+ * <ul>
+ *     <li>hot, the reactive commands of requests and answers</li>
+ *     <li>bulk, the blocking scheduler scripts and the pipelined answer writes</li>
+ *     <li>pub/sub, one connection per channel</li>
+ * </ul>
+ * The hot and bulk lanes each multiplex over a configured number of connections, taken in turn, and each has its own
+ * client so a lane that has too many commands waiting fails them instead of growing without bound. Reads routed to
+ * replicas use a master/replica connection, with the replicas discovered from the primary unless they are
+ * configured, or on a cluster another cluster connection that reads from the replicas of each slot. Read and pub/sub
+ * connections are opened on first use.
+ */
+@Slf4j
+@Singleton
+public class RedisConnections implements AutoCloseable {
+
+    private final boolean cluster;
+    // the cluster nodes to discover the cluster from, or the primary followed by any configured replicas
+    private final List<RedisURI> nodes;
+    private final ClientResources resources;
+    private final AbstractRedisClient hotClient;
+    private final AbstractRedisClient bulkClient;
+    private final AbstractRedisClient pubSubClient;
+    private final Lane hot;
+    private final Lane bulk;
+    private final StatefulRedisPubSubConnection<String, String> sharedPubSub;
+    private final Map<ReadRouting, RedisConnection> reads = new EnumMap<>(ReadRouting.class);
+    private final Map<String, StatefulRedisPubSubConnection<String, String>> pubSub = new HashMap<>();
+
+    /**
+     * Do everything through one connection and one pub/sub connection, both owned by the caller
+     */
+    RedisConnections(RedisConnection primary, StatefulRedisPubSubConnection<String, String> pubSub) {
+        this.cluster = primary.isCluster();
+        this.nodes = List.of();
+        this.resources = null;
+        this.hotClient = null;
+        this.bulkClient = null;
+        this.pubSubClient = null;
+        this.hot = new Lane(List.of(primary));
+        this.bulk = hot;
+        this.sharedPubSub = Objects.requireNonNull(pubSub);
+    }
+
+    @Inject
+    public RedisConnections(AbstractRedisConfiguration redis, RedisConfig config) {
+        this(!redis.getUris().isEmpty(), redis.getUris().isEmpty() ? List.of(redis.getUri().orElse(redis)) : redis.getUris(), config);
+    }
+
+    RedisConnections(boolean cluster, List<RedisURI> uris, RedisConfig config) {
+        this.cluster = cluster;
+        List<RedisURI> nodes = new ArrayList<>(uris);
+        if (!cluster) {
+            config.getReplicas().forEach(replica -> nodes.add(RedisURI.create(replica)));
+        }
+        this.nodes = List.copyOf(nodes);
+        // the lanes have their own clients for their own queue limits, and share their threads. Messages are handled
+        // on the I/O threads, so a message handler must not wait on a read.
+        this.resources = DefaultClientResources.create();
+        this.hotClient = client(resources, config.getHotQueueSize());
+        this.bulkClient = client(resources, config.getBulkQueueSize());
+        this.pubSubClient = client(resources, ClientOptions.DEFAULT_REQUEST_QUEUE_SIZE);
+        this.hot = open(hotClient, config.getHotConnections());
+        this.bulk = open(bulkClient, config.getBulkConnections());
+        bulk.connections.forEach(connection -> connection.setTimeout(config.getSchedulerTimeout()));
+        this.sharedPubSub = null;
+    }
+
+    /**
+     * A connection for the commands of requests and answers
+     */
+    RedisConnection hot() {
+        return hot.next();
+    }
+
+    /**
+     * All connections of the hot lane
+     */
+    List<RedisConnection> hotConnections() {
+        return hot.connections;
+    }
+
+    /**
+     * A connection for scheduler scripts and written behind updates
+     */
+    RedisConnection bulk() {
+        return bulk.next();
+    }
+
+    boolean isCluster() {
+        return cluster;
+    }
+
+    /**
+     * Whether reads with the routing go to the primary, through the hot lane
+     */
+    boolean isPrimary(ReadRouting routing) {
+        return routing == ReadRouting.primary || resources == null;
+    }
+
+    RedisConnection get(ReadRouting routing) {
+        if (isPrimary(routing)) {
+            return hot();
+        }
+        synchronized (reads) {
+            return reads.computeIfAbsent(routing, this::connect);
+        }
+    }
+
+    /**
+     * The pub/sub connection for a channel
+     */
+    StatefulRedisPubSubConnection<String, String> pubSub(String channel) {
+        if (sharedPubSub != null) {
+            return sharedPubSub;
+        }
+        synchronized (pubSub) {
+            return pubSub.computeIfAbsent(channel, c -> cluster
+                ? ((RedisClusterClient) pubSubClient).connectPubSub(StringCodec.UTF8)
+                : ((RedisClient) pubSubClient).connectPubSub(StringCodec.UTF8, nodes.get(0)));
+        }
+    }
+
+    private AbstractRedisClient client(ClientResources resources, int requestQueueSize) {
+        if (cluster) {
+            RedisClusterClient client = RedisClusterClient.create(resources, nodes);
+            client.setOptions(ClusterClientOptions.builder().requestQueueSize(requestQueueSize).build());
+            return client;
+        }
+        RedisClient client = RedisClient.create(resources);
+        client.setOptions(ClientOptions.builder().requestQueueSize(requestQueueSize).build());
+        return client;
+    }
+
+    private Lane open(AbstractRedisClient client, int connections) {
+        List<RedisConnection> lane = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            lane.add(cluster
+                ? RedisConnection.of(((RedisClusterClient) client).connect(StringCodec.UTF8))
+                : RedisConnection.of(((RedisClient) client).connect(StringCodec.UTF8, nodes.get(0))));
+        }
+        return new Lane(lane);
+    }
+
+    /**
+     * Each time one of these connections is activated, when it is opened and again when it reconnects after it
+     * dropped. Nothing if the connections are the caller's.
+     */
+    Flux<Event> activations() {
+        if (resources == null) {
+            return Flux.empty();
+        }
+        return resources.eventBus().get().filter(ConnectionActivatedEvent.class::isInstance);
+    }
+
+    /**
+     * Close the pub/sub connection of a channel, the next one is opened on first use. The caller's pub/sub connection
+     * is kept.
+     */
+    void closePubSub(String channel) {
+        if (sharedPubSub != null) {
+            return;
+        }
+        StatefulRedisPubSubConnection<String, String> connection;
+        synchronized (pubSub) {
+            connection = pubSub.remove(channel);
+        }
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    private RedisConnection connect(ReadRouting routing) {
+        log.info("Reading from Redis with {}", routing);
+        if (cluster) {
+            StatefulRedisClusterConnection<String, String> connection = ((RedisClusterClient) hotClient).connect(StringCodec.UTF8);
+            connection.setReadFrom(routing.readFrom());
+            return RedisConnection.of(connection);
+        }
+        // one uri discovers the replicas of the primary, a list is used as the whole topology
+        StatefulRedisMasterReplicaConnection<String, String> connection = nodes.size() == 1
+            ? MasterReplica.connect((RedisClient) hotClient, StringCodec.UTF8, nodes.get(0))
+            : MasterReplica.connect((RedisClient) hotClient, StringCodec.UTF8, nodes);
+        connection.setReadFrom(routing.readFrom());
+        return RedisConnection.of(connection);
+    }
+
+    @PreDestroy
+    @Override
+    public void close() {
+        if (resources == null) {
+            return;
+        }
+        synchronized (reads) {
+            reads.values().forEach(RedisConnection::close);
+            reads.clear();
+        }
+        synchronized (pubSub) {
+            pubSub.values().forEach(StatefulRedisPubSubConnection::close);
+            pubSub.clear();
+        }
+        hot.connections.forEach(RedisConnection::close);
+        bulk.connections.forEach(RedisConnection::close);
+        hotClient.shutdown();
+        bulkClient.shutdown();
+        pubSubClient.shutdown();
+        resources.shutdown();
+    }
+
+    /**
+     * Connections that share a kind of work, used in turn
+     */
+    private static class Lane {
+        private final List<RedisConnection> connections;
+        private final AtomicInteger next = new AtomicInteger();
+
+        Lane(List<RedisConnection> connections) {
+            this.connections = List.copyOf(connections);
+        }
+
+        RedisConnection next() {
+            if (connections.size() == 1) {
+                return connections.get(0);
+            }
+            return connections.get(Math.floorMod(next.getAndIncrement(), connections.size()));
+        }
+    }
+}
@@ -1,67 +1,487 @@
 package trivia.repository;
 
-import io.lettuce.core.Limit;
-import io.lettuce.core.Range;
-import io.lettuce.core.RedisClient;
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.LettuceFutures;
+import io.lettuce.core.RedisCommandTimeoutException;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanIterator;
 import io.lettuce.core.ScoredValue;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.ZAddArgs;
 import io.lettuce.core.api.StatefulRedisConnection;
-import io.lettuce.core.api.reactive.RedisReactiveCommands;
-import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.cluster.api.reactive.RedisClusterReactiveCommands;
+import io.lettuce.core.cluster.api.sync.RedisClusterCommands;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.output.ByteArrayOutput;
+import io.lettuce.core.output.StatusOutput;
+import io.lettuce.core.output.ValueOutput;
+import io.lettuce.core.protocol.CommandArgs;
+import io.lettuce.core.protocol.CommandType;
 import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
 import io.lettuce.core.pubsub.api.reactive.RedisPubSubReactiveCommands;
 import io.micronaut.context.annotation.Requires;
+import io.micronaut.scheduling.annotation.Scheduled;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import trivia.domain.AnswerKey;
+import trivia.domain.AnswerOptions;
+import trivia.domain.Difficulty;
 import trivia.domain.Game;
 import trivia.domain.Question;
 import trivia.domain.RoundEvent;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Slf4j
-@Requires(beans = RedisClient.class)
+@Requires(property = "trivia.repository", notEquals = "memory")
 @Singleton
 public class RedisGameRepository implements GameRepository {
 
-    // keys
+    // keys. The keys of a category share a hash tag, q:{<category>}, q:{<category>}:<difficulty> and
+    // category:{<category>}, and so do the keys of a game and the scheduler queues of its shard, e.g.
+    // game:{<shard>}:<game id> and delayed:rounds:{<shard>}:, so each script call uses one Redis Cluster slot.
     static final String Q_KEY_PREFIX = "q:";
+    static final String QUESTION_KEY_PREFIX = "question:";
     static final String GAME_KEY_PREFIX = "game:";
     static final String PLAYERS_KEY_PREFIX = "players:";
-    static final String ROUNDS_KEY_PREFIX = "rounds:";
+    static final String ANSWERS_KEY_PREFIX = "answers:";
+    // bitmaps by player ordinal, answered:{<shard>}:<game id>:<round> and eliminated:{<shard>}:<game id>
+    static final String ANSWERED_KEY_PREFIX = "answered:";
+    static final String ELIMINATED_KEY_PREFIX = "eliminated:";
+    // Bloom filter of the questions a player was dealt, seen:<username>
+    static final String SEEN_KEY_PREFIX = "seen:";
     static final String GAME_PENDING_KEY = "games_pending:";
     static final String DELAYED_ROUNDS_KEY = "delayed:rounds:";
     static final String GAME_CHANNEL_KEY = "game_channel:";
     static final String ROUNDS_CHANNEL_KEY = "rounds_channel:";
+    // the shard of a game that has enough players to start
+    static final String SCHEDULER_CHANNEL_KEY = "scheduler_channel:";
+    static final String CATEGORIES_KEY = "categories:";
+    static final String CATEGORY_KEY_PREFIX = "category:";
+    static final String CATEGORIES_CHANNEL_KEY = "categories_channel:";
+    static final String INVALIDATE_CHANNEL_KEY = "__redis__:invalidate";
+    // the one time changes to keys that were made, e.g. baseline
+    static final String MIGRATIONS_KEY = "migrations:";
+    static final String BASELINE_MIGRATION = "baseline";
 
     // FIELDS
     static final String TITLE = "title";
     static final String TOTAL_ROUNDS = "nrounds";
     static final String ROUND = "round";
-    static final String QUESTION = "question";
-    static final String PLAYERS = "players";
+    // round fields of the game hash, r<n>:q is the question id, r<n>:p the number of players, and r<n>:o and r<n>:c
+    // when answers open and close
+    static final String ROUND_FIELD_PREFIX = "r";
+    static final String QUESTION_FIELD_SUFFIX = ":q";
+    static final String PLAYERS_FIELD_SUFFIX = ":p";
+    static final String OPENS_FIELD_SUFFIX = ":o";
+    static final String CLOSES_FIELD_SUFFIX = ":c";
+    static final String TOTAL = "total";
+    static final String STATE = "state";
+    // field of the answers hash with the number of the last journal entry replayed from a node, j:<node id>
+    static final String JOURNAL_FIELD_PREFIX = "j:";
 
-    private final StatefulRedisConnection<String,String> connection;
-    private final StatefulRedisPubSubConnection<String, String> pubSubConnection;
+    // game states, a game is pending until it has enough players and finished after its last round
+    static final String STATE_PENDING = "pending";
+    static final String STATE_STARTED = "started";
+    static final String STATE_FINISHED = "finished";
+
+    private static final Duration ANSWER_FLUSH_TIMEOUT = Duration.ofSeconds(5);
+    // journal entries replayed per flush
+    private static final int JOURNAL_REPLAY_BATCH = 1000;
+
+    // questions allocated longest ago that an allocation samples from, per question allocated
+    private static final int ALLOCATION_CANDIDATES = 4;
+    private static final Difficulty[] DIFFICULTIES = Difficulty.values();
+    // questions indexed by difficulty at a time, when a category is indexed on startup
+    private static final int INDEX_BATCH = 500;
+    // game, player set and round keys of the first version, game:<id>, players:<id> and rounds:<round>:game:<id>
+    private static final Pattern BASELINE_GAME_KEY = Pattern.compile("(game|players):\\d+|rounds:\\d+:game:\\d+");
+
+    // seen questions only ever gain bits, a stale copy only misses the most recent games
+    private static final Duration SEEN_MAX_AGE = Duration.ofMinutes(1);
+
+    // field names for the usual number of rounds, so reads don't build them
+    private static final int PRECOMPUTED_ROUNDS = 64;
+    private static final String[] QUESTION_FIELDS = roundFields(QUESTION_FIELD_SUFFIX);
+    private static final String[] PLAYERS_FIELDS = roundFields(PLAYERS_FIELD_SUFFIX);
+    private static final String[] OPENS_FIELDS = roundFields(OPENS_FIELD_SUFFIX);
+    private static final String[] CLOSES_FIELDS = roundFields(CLOSES_FIELD_SUFFIX);
+
+    private final RedisConnections connections;
+    private final ReadRouting questionReads;
+    private final ReadRouting gameReads;
     private final JsonEncoder encoder;
+    private final RedisScript advanceRoundsScript;
+    private final RedisScript startGamesScript;
+    private final RedisScript createGameScript;
+    private final RedisScript saveQuestionScript;
+    private final RedisScript countCategoryScript;
+    private final RedisScript allocateQuestionsScript;
+    private final RedisScript addPlayerScript;
+    private final RedisScript addSeenScript;
+    private final RedisScript findPlayerScript;
+    private final RedisScript sweepPendingScript;
+    private final RedisScript replayAnswerScript;
+    private final RedisScript writeBitScript;
+    private final RedisScript writeAnswerScript;
+    private final Duration pendingGameTtl;
+    private final Duration finishedGameTtl;
+    private final Duration seenQuestionsTtl;
+    private final GameIdAllocator gameIds;
+    private final int shards;
+    // the shards this node drives the scheduler of, every shard without leases
+    private final ShardLeases leases;
+    private final int[] allShards;
+    private final AnswerTally answerTally = new AnswerTally();
+    // answer counts written that Redis has not replied to yet, reads of the counts wait for them
+    private final Set<CompletableFuture<Long>> answerWrites = ConcurrentHashMap.newKeySet();
+    // players that answered or were eliminated, checked on this node and written behind with the answer counts
+    private final NearCache<String, PlayerBits> playerBits;
+    private final Queue<BitWrite> pendingBits = new ConcurrentLinkedQueue<>();
+    private final NearCache<String, CachedSeen> seenCache;
+    // decoded questions and current round per game, only kept while round events are observed
+    private final NearCache<String, CachedGame> nearCache;
+    // questions by id, shared by all games since a question never changes once stored
+    private final NearCache<String, Question> questionCache;
+    private final boolean nearCacheTracking;
+    private final Duration readTimeout;
+    private final Duration writeTimeout;
+    private final Duration schedulerTimeout;
+    private final CircuitBreaker circuit;
+    // written behind updates kept on this node while Redis is unreachable, if configured
+    private final WriteJournal journal;
+    // when the next delayed round of the shards this node drives is due, as of the last time they were advanced
+    private volatile long nextRoundDue;
+    private volatile boolean nearCacheMaintained;
+    private volatile Tracking tracking;
+    private Disposable nearCacheEvents;
 
+    public RedisGameRepository(StatefulRedisConnection<String,String> connection, StatefulRedisPubSubConnection<String, String> pubSubConnection, JsonEncoder encoder, RedisConfig config) {
+        this(new RedisConnections(RedisConnection.of(connection), pubSubConnection), encoder, config);
+    }
 
-    public RedisGameRepository(StatefulRedisConnection<String,String> connection, StatefulRedisPubSubConnection<String, String> pubSubConnection, JsonEncoder encoder) {
-        this.connection = Objects.requireNonNull(connection);
-        this.pubSubConnection = Objects.requireNonNull(pubSubConnection);
+    @Inject
+    public RedisGameRepository(RedisConnections connections, JsonEncoder encoder, RedisConfig config) {
+        this.connections = Objects.requireNonNull(connections);
         this.encoder = Objects.requireNonNull(encoder);
+        Map<String, String> constants = Map.ofEntries(
+            Map.entry("GAME_KEY_PREFIX", GAME_KEY_PREFIX),
+            Map.entry("PLAYERS_KEY_PREFIX", PLAYERS_KEY_PREFIX),
+            Map.entry("QUESTION_KEY_PREFIX", QUESTION_KEY_PREFIX),
+            Map.entry("TITLE", TITLE),
+            Map.entry("TOTAL_ROUNDS", TOTAL_ROUNDS),
+            Map.entry("ROUND", ROUND),
+            Map.entry("ROUND_FIELD_PREFIX", ROUND_FIELD_PREFIX),
+            Map.entry("QUESTION_FIELD_SUFFIX", QUESTION_FIELD_SUFFIX),
+            Map.entry("PLAYERS_FIELD_SUFFIX", PLAYERS_FIELD_SUFFIX),
+            Map.entry("OPENS_FIELD_SUFFIX", OPENS_FIELD_SUFFIX),
+            Map.entry("CLOSES_FIELD_SUFFIX", CLOSES_FIELD_SUFFIX),
+            Map.entry("TOTAL", TOTAL),
+            Map.entry("STATE", STATE),
+            Map.entry("STATE_PENDING", STATE_PENDING),
+            Map.entry("STATE_STARTED", STATE_STARTED),
+            Map.entry("STATE_FINISHED", STATE_FINISHED),
+            Map.entry("ANSWERS_KEY_PREFIX", ANSWERS_KEY_PREFIX),
+            Map.entry("ANSWERED_KEY_PREFIX", ANSWERED_KEY_PREFIX),
+            Map.entry("ELIMINATED_KEY_PREFIX", ELIMINATED_KEY_PREFIX),
+            // channels are not keys, a cluster would route them by slot
+            Map.entry("GAME_CHANNEL_KEY", GAME_CHANNEL_KEY),
+            Map.entry("ROUNDS_CHANNEL_KEY", ROUNDS_CHANNEL_KEY),
+            Map.entry("SEEN_BITS", String.valueOf(SeenQuestions.BITS)),
+            Map.entry("SEEN_HASHES", String.valueOf(SeenQuestions.HASHES)),
+            Map.entry("EVENT_FORMAT", encoder.getFormat().name()));
+        this.advanceRoundsScript = RedisScript.load("advance_rounds", constants, "codec");
+        this.startGamesScript = RedisScript.load("start_games", constants, "codec");
+        this.createGameScript = RedisScript.load("create_game", constants);
+        this.saveQuestionScript = RedisScript.load("save_question", constants);
+        this.countCategoryScript = RedisScript.load("count_category", constants);
+        this.allocateQuestionsScript = RedisScript.load("allocate_questions", constants);
+        this.addPlayerScript = RedisScript.load("add_player", constants);
+        this.addSeenScript = RedisScript.load("add_seen", constants);
+        this.findPlayerScript = RedisScript.load("find_player", constants);
+        this.sweepPendingScript = RedisScript.load("sweep_pending", constants);
+        this.replayAnswerScript = RedisScript.load("replay_answer", constants);
+        this.writeBitScript = RedisScript.load("write_bit", constants);
+        this.writeAnswerScript = RedisScript.load("write_answer", constants);
+        this.pendingGameTtl = config.getPendingGameTtl();
+        this.finishedGameTtl = config.getFinishedGameTtl();
+        this.seenQuestionsTtl = config.getSeenQuestionsTtl();
+        this.gameIds = new GameIdAllocator(GAME_KEY_PREFIX, config.getGameIdBlockSize());
+        this.shards = config.getShards();
+        this.leases = config.isShardLeases() ? new ShardLeases("", shards, config.getLeaseDuration()) : null;
+        this.allShards = IntStream.range(0, shards).toArray();
+        this.nearCache = new NearCache<>(config.getNearCacheSize());
+        this.questionCache = new NearCache<>(config.getNearCacheSize());
+        this.playerBits = new NearCache<>(config.getNearCacheSize());
+        this.seenCache = new NearCache<>(config.getNearCacheSize());
+        // invalidations would only come from the one node the tracking command happened to go to
+        this.nearCacheTracking = config.isNearCacheTracking() && !connections.isCluster();
+        if (config.isNearCacheTracking() && connections.isCluster()) {
+            log.warn("Near cache tracking is not supported on a cluster, the near cache follows round events only");
+        }
+        this.questionReads = config.getQuestionReads();
+        this.gameReads = config.getGameReads();
+        this.readTimeout = config.getReadTimeout();
+        this.writeTimeout = config.getWriteTimeout();
+        this.schedulerTimeout = config.getSchedulerTimeout();
+        this.circuit = new CircuitBreaker("redis", config.getCircuitFailureThreshold(), config.getCircuitOpenDuration());
+        this.journal = config.getJournalPath().isEmpty() ? null : openJournal(Path.of(config.getJournalPath()), config.getJournalSize());
+    }
+
+    private static WriteJournal openJournal(Path path, int size) {
+        try {
+            WriteJournal journal = WriteJournal.open(path, size);
+            if (journal.hasPending()) {
+                log.info("Write journal {} has entries to replay", path);
+            }
+            return journal;
+        } catch (IOException e) {
+            throw new RepositoryExpection("Failed to open write journal " + path, e);
+        }
+    }
+
+    @PostConstruct
+    public void initialize() {
+        // hold shards before the scheduler first runs
+        renewLeases();
+        migrateBaselineKeys();
+        recountCategories();
+        // keep the near cache current from round events, and optionally from Redis client side caching
+        Flux<Object> events = nearCacheTracking ? subscribeToInvalidations().cast(Object.class) : Flux.empty();
+        events = Flux.merge(events, subscribeToRoundsChannel().doOnNext(this::onRoundEvent));
+        // before subscribing, which fails straight away if tracking can't be turned on
+        this.nearCacheMaintained = true;
+        this.nearCacheEvents = events.subscribe(
+            e -> {},
+            throwable -> {
+                log.error("Near cache events failed, no longer caching", throwable);
+                this.nearCacheMaintained = false;
+                this.nearCache.clear();
+            });
+    }
+
+    @PreDestroy
+    public void close() {
+        this.nearCacheMaintained = false;
+        if (this.nearCacheEvents != null) {
+            this.nearCacheEvents.dispose();
+        }
+        if (this.leases != null) {
+            try {
+                this.leases.release(connections.bulk().sync());
+            } catch (RuntimeException e) {
+                log.warn("Failed to release shard leases, they expire instead", e);
+            }
+        }
+        if (this.journal != null) {
+            try {
+                this.journal.close();
+            } catch (IOException e) {
+                log.warn("Failed to close write journal", e);
+            }
+        }
     }
 
     @Override
     public Mono<Long> save(Question question) {
-        // add question to a sorted set, keyed by the category name
-        return Mono.fromSupplier(() -> encoder.encodeQuestion(question))
-            .flatMap(q -> connection.reactive().zadd(questionKey(question.getCategory()), 1, q));
+        if (!AnswerTally.canCount(question)) {
+            return Mono.error(new IllegalArgumentException("Question offers more than " + AnswerTally.MAX_OPTIONS
+                + " answers: " + question.getText()));
+        }
+        // store the question under its id, add the id to sorted sets keyed by the category name, and register the
+        // category. Each step is in a different slot, and each is idempotent, so saving again completes a question
+        // that was only partly saved.
+        var commands = connections.hot().reactive();
+        String category = question.getCategory();
+        String difficulty = question.getDifficulty() == null ? "" : question.getDifficulty().name();
+        return guard("save", writeTimeout, Mono.fromSupplier(() -> QuestionId.of(question))
+            .flatMap(id -> commands.set(questionIdKey(id), encoder.encodeQuestion(question), SetArgs.Builder.nx())
+                .then(saveQuestionScript.<Long>eval(commands, ScriptOutputType.INTEGER, saveQuestionKeys(question),
+                    difficulty, id).single()))
+            .flatMap(added -> commands.sadd(CATEGORIES_KEY, category)
+                .filter(registered -> registered == 1L)
+                .flatMap(registered -> commands.publish(CATEGORIES_CHANNEL_KEY, category))
+                .thenReturn(added)));
+    }
+
+    /**
+     * Convert the keys of the first version, once. Its categories were sorted sets of encoded questions,
+     * q:<category>, which are saved again as questions stored by id. Its games can't be carried over, a player set or a
+     * round hash means nothing to the scripts, so games in progress are dropped with the scheduler queues. Game ids
+     * carry on from the same counter. A cluster only ever had the current keys.
+     */
+    void migrateBaselineKeys() {
+        if (connections.isCluster()) {
+            return;
+        }
+        try {
+            circuit.call(() -> {
+                var commands = connections.bulk().sync();
+                if (commands.sismember(MIGRATIONS_KEY, BASELINE_MIGRATION)) {
+                    return null;
+                }
+                List<String> categories = new ArrayList<>();
+                List<String> games = new ArrayList<>();
+                ScanIterator<String> keys = ScanIterator.scan(commands, ScanArgs.Builder.limit(INDEX_BATCH));
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    if (key.startsWith(Q_KEY_PREFIX) && !key.startsWith(Q_KEY_PREFIX + "{")) {
+                        categories.add(key);
+                    } else if (BASELINE_GAME_KEY.matcher(key).matches()) {
+                        games.add(key);
+                    }
+                }
+                for (String key : categories) {
+                    if (!"zset".equals(commands.type(key))) {
+                        continue;
+                    }
+                    ScanIterator<ScoredValue<String>> questions = ScanIterator.zscan(commands, key,
+                        ScanArgs.Builder.limit(INDEX_BATCH));
+                    while (questions.hasNext()) {
+                        saveBaselineQuestion(commands, questions.next().getValue());
+                    }
+                    commands.del(key);
+                }
+                for (int i = 0; i < games.size(); i += INDEX_BATCH) {
+                    commands.del(games.subList(i, Math.min(i + INDEX_BATCH, games.size())).toArray(new String[0]));
+                }
+                commands.del(GAME_PENDING_KEY, DELAYED_ROUNDS_KEY);
+                commands.sadd(MIGRATIONS_KEY, BASELINE_MIGRATION);
+                if (!categories.isEmpty() || !games.isEmpty()) {
+                    log.info("Converted {} categories and dropped {} game keys of the first version",
+                        categories.size(), games.size());
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Failed to convert the keys of the first version, they are converted on the next start", e);
+        }
+    }
+
+    private void saveBaselineQuestion(RedisClusterCommands<String, String> commands, String encoded) {
+        Question question;
+        try {
+            question = encoder.decodeQuestion(encoded);
+        } catch (RuntimeException e) {
+            log.warn("Cannot convert question. {}", e.getMessage());
+            return;
+        }
+        if (question.getCategory() == null || !AnswerTally.canCount(question)) {
+            log.warn("Cannot convert question, it has no category or too many answers: {}", question.getText());
+            return;
+        }
+        String id = QuestionId.of(question);
+        commands.set(questionIdKey(id), encoder.encodeQuestion(question), SetArgs.Builder.nx());
+        saveQuestionScript.eval(commands, ScriptOutputType.INTEGER, saveQuestionKeys(question),
+            question.getDifficulty() == null ? "" : question.getDifficulty().name(), id);
+        commands.sadd(CATEGORIES_KEY, question.getCategory());
+    }
+
+    /**
+     * The keys save_question.lua adds a question to
+     */
+    private static String[] saveQuestionKeys(Question question) {
+        String category = question.getCategory();
+        return new String[]{questionKey(category), categoryKey(category),
+            question.getDifficulty() == null ? questionKey(category) : questionKey(category, question.getDifficulty())};
+    }
+
+    /**
+     * Index and recount every registered category from its sorted sets. Questions stored before categories were
+     * indexed by difficulty and counted are not saved again, the data is only loaded into an empty repository.
+     */
+    void recountCategories() {
+        String[] difficulties = new String[DIFFICULTIES.length];
+        for (Difficulty d : DIFFICULTIES) {
+            difficulties[d.ordinal()] = d.name();
+        }
+        try {
+            circuit.call(() -> {
+                var commands = connections.bulk().sync();
+                for (String category : commands.smembers(CATEGORIES_KEY)) {
+                    String[] keys = new String[DIFFICULTIES.length + 2];
+                    keys[0] = questionKey(category);
+                    keys[1] = categoryKey(category);
+                    for (Difficulty d : DIFFICULTIES) {
+                        keys[d.ordinal() + 2] = questionKey(category, d);
+                    }
+                    indexDifficulties(commands, category);
+                    countCategoryScript.eval(commands, ScriptOutputType.INTEGER, keys, difficulties);
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Failed to recount categories, they are recounted when questions are saved", e);
+        }
+    }
+
+    /**
+     * Add the questions of a category that are missing from the index of their difficulty, with the score they have in
+     * the category. Only runs while the indexes hold fewer questions than the category.
+     */
+    private void indexDifficulties(RedisClusterCommands<String, String> commands, String category) {
+        long total = commands.zcard(questionKey(category));
+        long indexed = 0;
+        for (Difficulty d : DIFFICULTIES) {
+            indexed += commands.zcard(questionKey(category, d));
+        }
+        if (indexed >= total) {
+            return;
+        }
+        log.info("Indexing Category[{}] by difficulty", category);
+        for (long start = 0; start < total; start += INDEX_BATCH) {
+            List<ScoredValue<String>> batch = commands.zrangeWithScores(questionKey(category), start, start + INDEX_BATCH - 1);
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<KeyValue<String, String>> found = commands.mget(batch.stream()
+                .map(scored -> questionIdKey(scored.getValue()))
+                .toArray(String[]::new));
+            Map<Difficulty, List<Object>> byDifficulty = new EnumMap<>(Difficulty.class);
+            for (int i = 0; i < batch.size(); i++) {
+                Difficulty d = found.get(i).hasValue() ? encoder.decodeQuestion(found.get(i).getValue()).getDifficulty() : null;
+                if (d != null) {
+                    List<Object> scoresAndValues = byDifficulty.computeIfAbsent(d, k -> new ArrayList<>());
+                    scoresAndValues.add(batch.get(i).getScore());
+                    scoresAndValues.add(batch.get(i).getValue());
+                }
+            }
+            // allocations may rescore the questions meanwhile, NX keeps their scores
+            byDifficulty.forEach((d, scoresAndValues) ->
+                commands.zadd(questionKey(category, d), ZAddArgs.Builder.nx(), scoresAndValues.toArray()));
+        }
     }
 
     @Override
@@ -71,175 +491,716 @@ public class RedisGameRepository implements GameRepository {
 
     @Override
     public Flux<Question> findQuestionsInCategory(String category, int stop) {
-        return connection.reactive().zrange(questionKey(category), 0, stop)
-            .map(encoder::decodeQuestion);
+        var commands = connections.get(questionReads).reactive();
+        return guard("findQuestionsInCategory", readTimeout, commands.zrange(questionKey(category), 0, stop)
+            .collectList()
+            .flatMapMany(ids -> findQuestions(ids, commands)));
+    }
+
+    @Override
+    public Flux<Question> allocateQuestions(String category, int n) {
+        int[] counts = new int[DIFFICULTIES.length + 1];
+        counts[0] = n;
+        return allocateQuestions(category, counts, true);
     }
 
     @Override
-    public Flux<Question> allocateQuestions(String category, int stop) {
-        var commands = this.connection.reactive();
-        String key = questionKey(category);
-        long timestamp = Instant.now().toEpochMilli();
-        return commands.zrange(key, 0, stop - 1)
-            // score the question with the timestamp so it pushes to the bottom and we don't see the same one every time
-            .doOnNext(member -> commands.zadd(key, timestamp, member).subscribe())
-            .map(encoder::decodeQuestion);
+    public Flux<Question> sampleQuestions(String category, int n) {
+        int[] counts = new int[DIFFICULTIES.length + 1];
+        counts[0] = n;
+        return allocateQuestions(category, counts, false);
+    }
+
+    @Override
+    public Mono<Void> allocateSampled(String category, List<Question> questions) {
+        if (questions.isEmpty()) {
+            return Mono.empty();
+        }
+        // the same as the allocation script would, a question is only in the index of its own difficulty
+        var commands = connections.hot().reactive();
+        double now = Instant.now().toEpochMilli();
+        List<Mono<Long>> rescores = new ArrayList<>();
+        rescores.add(commands.zadd(questionKey(category), ZAddArgs.Builder.xx(), rescored(now, questions)));
+        for (Difficulty d : DIFFICULTIES) {
+            List<Question> ofDifficulty = questions.stream().filter(q -> q.getDifficulty() == d).collect(Collectors.toList());
+            if (!ofDifficulty.isEmpty()) {
+                rescores.add(commands.zadd(questionKey(category, d), ZAddArgs.Builder.xx(), rescored(now, ofDifficulty)));
+            }
+        }
+        return guard("allocateSampled", writeTimeout, Flux.merge(rescores).then());
+    }
+
+    private static Object[] rescored(double score, List<Question> questions) {
+        Object[] scoresAndValues = new Object[questions.size() * 2];
+        for (int i = 0; i < questions.size(); i++) {
+            scoresAndValues[i * 2] = score;
+            scoresAndValues[i * 2 + 1] = QuestionId.of(questions.get(i));
+        }
+        return scoresAndValues;
+    }
+
+    @Override
+    public Flux<Question> allocateQuestions(String category, List<Difficulty> rounds) {
+        // all the questions of a difficulty are sampled from its index at once, then dealt to its rounds in order
+        int[] counts = new int[DIFFICULTIES.length + 1];
+        rounds.forEach(d -> counts[d.ordinal() + 1]++);
+        return allocateQuestions(category, counts, true)
+            .collectList()
+            .flatMapIterable(questions -> {
+                Map<Difficulty, Iterator<Question>> byDifficulty = new EnumMap<>(Difficulty.class);
+                for (Difficulty d : DIFFICULTIES) {
+                    byDifficulty.put(d, questions.stream().filter(q -> q.getDifficulty() == d).iterator());
+                }
+                List<Question> dealt = new ArrayList<>(rounds.size());
+                for (Difficulty d : rounds) {
+                    Iterator<Question> available = byDifficulty.get(d);
+                    if (available.hasNext()) {
+                        dealt.add(available.next());
+                    }
+                }
+                return dealt;
+            });
+    }
+
+    /**
+     * @param counts the number of questions to sample from the whole category, then from each difficulty
+     * @param rescore false to only sample the questions, without allocating them
+     */
+    private Flux<Question> allocateQuestions(String category, int[] counts, boolean rescore) {
+        // sample and rescore the questions in one script call, so concurrent allocations in a category never get the
+        // same questions
+        String[] keys = new String[DIFFICULTIES.length + 1];
+        keys[0] = questionKey(category);
+        for (Difficulty d : DIFFICULTIES) {
+            keys[d.ordinal() + 1] = questionKey(category, d);
+        }
+        String[] args = new String[counts.length + 4];
+        args[0] = String.valueOf(Instant.now().toEpochMilli());
+        args[1] = String.valueOf(ALLOCATION_CANDIDATES);
+        args[2] = String.valueOf(ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE));
+        args[3] = rescore ? "1" : "0";
+        for (int i = 0; i < counts.length; i++) {
+            args[i + 4] = String.valueOf(counts[i]);
+        }
+        var commands = connections.hot().reactive();
+        return guard("allocateQuestions", writeTimeout, allocateQuestionsScript.<List<String>>eval(commands, ScriptOutputType.MULTI, keys, args)
+            .single()
+            .flatMapMany(ids -> findQuestions(ids, commands)));
     }
 
     @Override
     public Flux<String> listCategories() {
-        // get the keys matching the question index
-        Flux<String> keys = connection.reactive().keys(questionKey("*"));
-        return keys.map(s -> s.substring(Q_KEY_PREFIX.length()));
+        return guard("listCategories", readTimeout, connections.get(questionReads).reactive().smembers(CATEGORIES_KEY));
     }
 
     @Override
     public Mono<String> createGame(String title, List<Question> questions) {
-        // allocate a game id, then create a game hash entry for the game
-        var commands = connection.reactive();
-        return commands.incr(GAME_KEY_PREFIX).flatMap(id -> {
+        // take an id from the reserved block, then create the game and all rounds with one script call
+        var commands = connections.hot().reactive();
+        String[] ids = questions.stream().map(QuestionId::of).toArray(String[]::new);
+        return guard("createGame", writeTimeout, storeQuestions(ids, questions, commands).then(gameIds.nextId(commands)).flatMap(id -> {
             final String gameId = id.toString();
-            String gameKey = gameKey(gameId);
-            // transaction to create game and rounds
-            return commands.watch(gameKey).flatMap(watchResp -> commands.multi().flatMap(multiResp -> {
-                commands.hset(gameKey, Map.of(TITLE, title, TOTAL_ROUNDS, String.valueOf(questions.size()))).subscribe();
-                for (int i=0; i < questions.size(); i++) {
-                    String encoded = encoder.encodeQuestion(questions.get(i));
-                    commands.hset(roundsKey(gameId, i), QUESTION, encoded).subscribe();
-                }
-                commands.exec().subscribe();
-                return Mono.just(gameId);
-            }));
-        });
+            String[] args = new String[ids.length + 3];
+            args[0] = gameId;
+            args[1] = title;
+            args[2] = String.valueOf(pendingGameTtl.toMillis());
+            System.arraycopy(ids, 0, args, 3, ids.length);
+            return createGameScript.<Long>eval(commands, ScriptOutputType.INTEGER, new String[]{gameKey(gameId)}, args)
+                .single()
+                .flatMap(created -> created == 1L
+                    ? Mono.just(gameId)
+                    : Mono.error(new RepositoryExpection("Game id already in use " + gameId, null)))
+                .doOnNext(this::wrote);
+        }));
+    }
+
+    /**
+     * Store the questions that aren't known to be stored already. Allocated questions are, this only covers
+     * questions that were never saved.
+     */
+    private Mono<Void> storeQuestions(String[] ids, List<Question> questions, RedisClusterReactiveCommands<String, String> commands) {
+        return Flux.range(0, ids.length)
+            .filter(i -> questionCache.get(ids[i]) == null)
+            .flatMap(i -> commands.set(questionIdKey(ids[i]), encoder.encodeQuestion(questions.get(i)), SetArgs.Builder.nx()))
+            .then();
     }
 
     @Override
     public Mono<Game> findGame(String gameId) {
-        return findGameWithCommands(gameId, this.connection.reactive());
+        // players join and rounds advance, so it is read from the primary
+        return guard("findGame", readTimeout, findGameWithCommands(gameId, connections.hot().reactive()));
     }
 
-    private Mono<Game> findGameWithCommands(String gameId, RedisReactiveCommands<String, String> commands) {
-        return commands.scard(playersKey(gameId))        // count players set, O(1)
-            .zipWith(commands.hgetall(gameKey(gameId)))  // find game fields
+    private Mono<Game> findGameWithCommands(String gameId, RedisClusterReactiveCommands<String, String> commands) {
+        return commands.hlen(playersKey(gameId))         // count players, O(1)
+            .zipWith(findGameFields(gameId, commands))   // find game fields, not the rounds
             .filter(tuple -> !tuple.getT2().isEmpty())   // empty map is not found
+            .doOnNext(tuple -> cacheGame(gameId, tuple.getT2()))
             .map(tuple -> Game.builder()
                 .id(gameId)
                 .title(tuple.getT2().get(TITLE))
                 .round(tuple.getT2().containsKey(ROUND) ? Integer.parseInt(tuple.getT2().get(ROUND)) : null)
                 .players(tuple.getT1().intValue())
+                .finished(STATE_FINISHED.equals(tuple.getT2().get(STATE)))
                 .build());
     }
 
+    private Mono<Map<String, String>> findGameFields(String gameId, RedisClusterReactiveCommands<String, String> commands) {
+        return commands.hmget(gameKey(gameId), TITLE, ROUND, TOTAL_ROUNDS, STATE)
+            .filter(KeyValue::hasValue)
+            .collectMap(KeyValue::getKey, KeyValue::getValue);
+    }
+
     @Override
     public Mono<Question> findQuestionForRound(String gameId, int round) {
-        var commands = connection.reactive();
-        return commands.hget(roundsKey(gameId, round), QUESTION)
-            .map(encoder::decodeQuestion)
+        // questions never change once the game is created
+        CachedGame cached = nearCacheMaintained ? nearCache.computeIfAbsent(gameId, k -> new CachedGame()) : null;
+        if (cached != null) {
+            Question q = cached.questions.get(round);
+            if (q != null) {
+                return Mono.just(q);
+            }
+        }
+        return guard("findQuestionForRound", readTimeout, readGame(commands -> commands.hget(gameKey(gameId), questionField(round)))
+                .flatMap(this::findQuestion))
+            .doOnNext(q -> {
+                if (cached != null) {
+                    cached.questions.put(round, q);
+                }
+            })
             .doOnSuccess(q -> log.debug("findQuestionForRound: Game[{}] Round[{}] {}", gameId, round, q));
+    }
+
+    private Mono<Question> findQuestion(String id) {
+        Question cached = questionCache.get(id);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        // a replica may not have a question the primary stored just now
+        return readAnywhere(questionReads, commands -> commands.get(questionIdKey(id)))
+            .map(encoder::decodeQuestion)
+            .doOnNext(q -> questionCache.computeIfAbsent(id, k -> q));
+    }
 
+    private Flux<Question> findQuestions(List<String> ids, RedisClusterReactiveCommands<String, String> commands) {
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        // one MGET for the questions that aren't cached, then all of them in the order of the ids
+        String[] missing = ids.stream()
+            .filter(id -> questionCache.get(id) == null)
+            .map(this::questionIdKey)
+            .toArray(String[]::new);
+        Mono<Map<String, Question>> loaded = missing.length == 0
+            ? Mono.just(Map.of())
+            : commands.mget(missing)
+                .filter(KeyValue::hasValue)
+                .collectMap(kv -> kv.getKey().substring(QUESTION_KEY_PREFIX.length()), kv -> encoder.decodeQuestion(kv.getValue()));
+        return loaded.flatMapIterable(questions -> ids.stream()
+            .map(id -> {
+                Question q = questions.get(id);
+                return q != null ? questionCache.computeIfAbsent(id, k -> q) : questionCache.get(id);
+            })
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList()));
     }
 
     @Override
-    public void countAnswer(String gameId, int round, String answer) {
-        var commands = connection.reactive();
-        commands.hincrby(roundsKey(gameId, round), answer, 1);
+    public Mono<Integer> findCurrentRound(String gameId) {
+        CachedGame cached = nearCacheMaintained ? nearCache.get(gameId) : null;
+        if (cached != null && cached.round != null) {
+            return Mono.just(cached.round);
+        }
+        return guard("findCurrentRound", readTimeout, loadCurrentRound(gameId));
+    }
+
+    private Mono<Integer> currentRound(String gameId) {
+        CachedGame cached = nearCacheMaintained ? nearCache.get(gameId) : null;
+        return cached != null && cached.round != null ? Mono.just(cached.round) : loadCurrentRound(gameId);
+    }
+
+    private Mono<Integer> loadCurrentRound(String gameId) {
+        return connections.hot().reactive().hget(gameKey(gameId), ROUND)
+            .map(Integer::parseInt)
+            .doOnNext(round -> {
+                if (nearCacheMaintained) {
+                    nearCache.computeIfAbsent(gameId, k -> new CachedGame()).advanceTo(round);
+                }
+            });
     }
 
     @Override
-    public Mono<Integer> findPlayerCount(String gameId, int round) {
-        var commands = connection.reactive();
-        return commands.hget(roundsKey(gameId, round), PLAYERS).map(v -> {
-            log.debug("wtf");
-            return Integer.parseInt(v);
-        });
+    public Mono<AnswerKey> findAnswerKey(String gameId) {
+        CachedGame cached = nearCacheMaintained ? nearCache.get(gameId) : null;
+        if (cached != null) {
+            AnswerKey key = cached.answerKey;
+            Integer round = cached.round;
+            if (key != null && round != null && key.getRound() == round) {
+                return Mono.just(key);
+            }
+        }
+        return guard("findAnswerKey", readTimeout, currentRound(gameId)
+            // a stale key would take answers as late, so it is read from the primary
+            .flatMap(round -> connections.hot().reactive().hmget(gameKey(gameId), questionField(round), opensField(round), closesField(round))
+                .collectList()
+                .filter(fields -> fields.stream().allMatch(KeyValue::hasValue))
+                .flatMap(fields -> findQuestion(fields.get(0).getValue()).map(q -> {
+                    var options = AnswerOptions.of(q, gameId, round);
+                    return AnswerKey.builder()
+                        .round(round)
+                        .correctIndex(options.getCorrectIndex())
+                        .options(options.size())
+                        .opensAt(Long.parseLong(fields.get(1).getValue()))
+                        .closesAt(Long.parseLong(fields.get(2).getValue()))
+                        .build();
+                }))))
+            .doOnNext(key -> {
+                if (nearCacheMaintained) {
+                    nearCache.computeIfAbsent(gameId, k -> new CachedGame()).answerKey = key;
+                }
+            });
     }
 
     @Override
-    public Mono<Game> addPlayer(String gameId, String username) {
-        var commands = connection.reactive();
-        return commands.hgetall(gameKey(gameId))
-            .filter(g -> !g.isEmpty() && !g.containsKey(ROUND))
-            .flatMap(g -> commands.sadd(playersKey(gameId), username))
-            .filter(n -> n > 0L) // if already registered
-            .flatMap(g -> findGameWithCommands(gameId, commands))
-            .doOnSuccess(g -> {
-                if (g != null) {
-                    ScoredValue<String> scoredGame = ScoredValue.fromNullable(g.getPlayers(), gameId);
-                    commands.zadd(GAME_PENDING_KEY, scoredGame).subscribe();
+    public void countAnswer(String gameId, int round, int option) {
+        // written behind, by flushAnswers and when the round completes
+        answerTally.increment(gameId, round, option);
+    }
+
+    /**
+     * Write the answers counted on this node since the last flush, with one pipelined script call per game, round and
+     * answer option, and the player bits set since the last flush with one each. While Redis is unreachable
+     * they are kept in the write journal instead, if there is one, and replayed before anything else is written.
+     */
+    @Scheduled(fixedDelay = "${trivia.redis.answer-flush-interval:100ms}")
+    public void flushAnswers() {
+        if (journaling()) {
+            writeBehind(answerTally.drain());
+            replayJournal();
+            return;
+        }
+        try {
+            circuit.call(() -> {
+                List<CompletableFuture<Long>> writes = writeBehind(answerTally.drain());
+                if (!writes.isEmpty() && !LettuceFutures.awaitAll(ANSWER_FLUSH_TIMEOUT, writes.toArray(new CompletableFuture[0]))) {
+                    throw new RepositoryTimeoutException("flushAnswers", ANSWER_FLUSH_TIMEOUT, null);
+                }
+                return writes.size();
+            });
+        } catch (RepositoryUnavailableException e) {
+            // kept on this node until the circuit closes
+        } catch (RuntimeException e) {
+            log.warn("Failed to write answer counts, they will be retried", e);
+        }
+    }
+
+    /**
+     * Whether written behind updates go to the journal, while Redis is unreachable and until what was journaled is
+     * replayed, so they reach Redis in order
+     */
+    private boolean journaling() {
+        return journal != null && (circuit.getState() != CircuitBreaker.State.closed || journal.hasPending());
+    }
+
+    /**
+     * Write answer counts and the pending player bits on the bulk lane, or to the journal while journaling
+     */
+    private List<CompletableFuture<Long>> writeBehind(List<AnswerTally.Delta> deltas) {
+        if (!journaling()) {
+            RedisConnection connection = connections.bulk();
+            List<CompletableFuture<Long>> writes = writeAnswers(connection, deltas);
+            writes.addAll(writeBits(connection));
+            return writes;
+        }
+        boolean full = false;
+        for (AnswerTally.Delta delta : deltas) {
+            AnswerTally.Key key = delta.getKey();
+            if (!journal.append(WriteJournal.Kind.answer, answersKey(key.getGameId()),
+                answerField(key.getRound(), key.getOption()), String.valueOf(delta.getCount()))) {
+                answerTally.restore(delta);
+                full = true;
+            }
+        }
+        List<BitWrite> kept = new ArrayList<>();
+        BitWrite bit;
+        while ((bit = pendingBits.poll()) != null) {
+            if (!journal.append(WriteJournal.Kind.bit, bit.key, String.valueOf(bit.offset), bit.gameKey, bit.closesField)) {
+                kept.add(bit);
+                full = true;
+            }
+        }
+        pendingBits.addAll(kept);
+        if (full) {
+            log.warn("Write journal is full, keeping writes in memory");
+        }
+        return List.of();
+    }
+
+    /**
+     * Replay the journal in order, a batch at a time, on the bulk lane. Replaying is the circuit's trial, and an entry
+     * is only forgotten once it and every entry before it are written. Replaying an entry again is harmless, answer
+     * counts are skipped if they were replayed before and bits and seen questions are only ever set.
+     */
+    private void replayJournal() {
+        try {
+            circuit.call(() -> {
+                var commands = connections.bulk().sync();
+                List<WriteJournal.Entry> entries = journal.pending(JOURNAL_REPLAY_BATCH);
+                if (entries.isEmpty()) {
+                    // nothing to replay, just try Redis
+                    return commands.ping();
+                }
+                String replayedField = JOURNAL_FIELD_PREFIX + journal.getNodeId();
+                for (; !entries.isEmpty(); entries = journal.pending(JOURNAL_REPLAY_BATCH)) {
+                    for (WriteJournal.Entry entry : entries) {
+                        replay(commands, replayedField, entry);
+                    }
+                    journal.replayed(entries.get(entries.size() - 1));
                 }
-                log.debug("Added player[{}] to Game[{}]", username, gameId);
+                log.info("Replayed write journal");
+                return null;
             });
+        } catch (RepositoryUnavailableException e) {
+            // still waiting for the circuit
+        } catch (RuntimeException e) {
+            log.warn("Failed to replay write journal, it will be retried", e);
+        }
+    }
+
+    private void replay(RedisClusterCommands<String, String> commands, String replayedField, WriteJournal.Entry entry) {
+        String[] keys = {entry.getKey()};
+        List<String> args = entry.getArgs();
+        switch (entry.getKind()) {
+            case answer:
+                // the game key of the answers key, which has the same tag and id
+                String gameKey = GAME_KEY_PREFIX + entry.getKey().substring(ANSWERS_KEY_PREFIX.length());
+                replayAnswerScript.eval(commands, ScriptOutputType.INTEGER, new String[]{entry.getKey(), gameKey},
+                    replayedField, String.valueOf(entry.getSeq()), args.get(0), args.get(1));
+                break;
+            case bit:
+                writeBitScript.eval(commands, ScriptOutputType.INTEGER, new String[]{args.get(1), entry.getKey()},
+                    args.get(0), args.get(2), String.valueOf(System.currentTimeMillis()),
+                    String.valueOf(finishedGameTtl.toMillis()));
+                break;
+            case seen:
+                addSeenScript.eval(commands, ScriptOutputType.INTEGER, keys, args.toArray(new String[0]));
+                break;
+        }
     }
 
     @Override
-    public void advancePendingRounds(Duration roundStartDelay, Duration roundDuration) {
-        // This supports polling so use sync for clarity
-        RedisCommands<String, String> commands = connection.sync();
-        final double time = Instant.now().toEpochMilli();
-        Range<Double> range = Range.from(Range.Boundary.including(time), Range.Boundary.unbounded());
-        List<String> pending = commands.zrangebyscore(DELAYED_ROUNDS_KEY, range, Limit.from(100));
-
-        // FIXME: locks
-        pending.forEach(value -> {
-            RoundEvent roundEvent = encoder.decodeRoundEvent(value);
-            String roundsKey = roundsKey(roundEvent.getGameId(), roundEvent.getRound());
-            String gameKey = gameKey(roundEvent.getGameId());
-            String playersKey = playersKey(roundEvent.getGameId());
-            commands.watch(roundsKey);
-            commands.multi();
-            if (roundEvent.getStarted()) {
-                commands.hincrby(gameKey, ROUND, 1);
-                Long currentPlayers = commands.scard(playersKey);
-                if (currentPlayers != null) {
-                    commands.hset(roundsKey, PLAYERS, currentPlayers.toString());
+    public Mono<int[]> findAnswerCounts(String gameId, int round, int options) {
+        if (options == 0) {
+            return Mono.just(new int[0]);
+        }
+        String[] fields = new String[options];
+        for (int option = 0; option < options; option++) {
+            fields[option] = answerField(round, option);
+        }
+        return guard("findAnswerCounts", readTimeout, Mono.defer(() -> {
+            // counts flushed on the bulk lane, or when the round completed, may still be on their way. A failed write
+            // is counted again by a later flush.
+            CompletableFuture<Void> written = CompletableFuture.allOf(answerWrites.toArray(new CompletableFuture[0]));
+            return Mono.fromFuture(written).onErrorResume(e -> Mono.empty()).then(Mono.defer(() -> {
+                // the read is queued behind the counts still pending on this node, written on the same connection
+                RedisConnection connection = connections.hot();
+                writeAnswers(connection, answerTally.drain(gameId, round));
+                return connection.reactive().hmget(answersKey(gameId), fields).collectList();
+            }));
+        }))
+            .map(values -> {
+                int[] counts = new int[options];
+                for (int option = 0; option < counts.length; option++) {
+                    counts[option] = Integer.parseInt(values.get(option).getValueOrElse("0"));
                 }
-                RoundEvent nextEvent = RoundEvent.builder()
-                    .gameId(roundEvent.getGameId())
-                    .round(roundEvent.getRound())
-                    .started(true)
-                    .build();
-                commands.zadd(DELAYED_ROUNDS_KEY, ScoredValue.just(futureTimestamp(roundDuration), encoder.encodeRoundEvent(nextEvent)));
-            } else {
-                int max = Integer.parseInt(commands.hget(gameKey, TOTAL_ROUNDS));
-                int nextRoundNumber = roundEvent.getRound() + 1;
-                if (nextRoundNumber < max) {
-                    RoundEvent nextEvent = RoundEvent.builder()
-                        .gameId(roundEvent.getGameId())
-                        .round(nextRoundNumber)
-                        .started(true)
-                        .build();
-                    commands.zadd(DELAYED_ROUNDS_KEY, ScoredValue.just(futureTimestamp(roundStartDelay), encoder.encodeRoundEvent(nextEvent)));
+                return counts;
+            });
+    }
+
+    private List<CompletableFuture<Long>> writeAnswers(RedisConnection connection, List<AnswerTally.Delta> deltas) {
+        // async commands are pipelined, each is written without waiting for the previous reply
+        var commands = connection.async();
+        List<CompletableFuture<Long>> writes = new ArrayList<>(deltas.size());
+        for (AnswerTally.Delta delta : deltas) {
+            AnswerTally.Key key = delta.getKey();
+            CompletableFuture<Long> write = writeAnswerScript.eval(commands, ScriptOutputType.INTEGER,
+                new String[]{gameKey(key.getGameId()), answersKey(key.getGameId())},
+                answerField(key.getRound(), key.getOption()), String.valueOf(delta.getCount()));
+            answerWrites.add(write);
+            write.whenComplete((count, throwable) -> {
+                answerWrites.remove(write);
+                if (throwable != null) {
+                    answerTally.restore(delta);
+                }
+            });
+            writes.add(write);
+        }
+        return writes;
+    }
+
+    private List<CompletableFuture<Long>> writeBits(RedisConnection connection) {
+        var commands = connection.async();
+        List<CompletableFuture<Long>> writes = new ArrayList<>();
+        String now = String.valueOf(System.currentTimeMillis());
+        String ttl = String.valueOf(finishedGameTtl.toMillis());
+        BitWrite bit;
+        while ((bit = pendingBits.poll()) != null) {
+            final BitWrite write = bit;
+            // set with the key's time to live, in case the round or game is over and its keys expired already
+            CompletableFuture<Long> future = writeBitScript.eval(commands, ScriptOutputType.INTEGER,
+                new String[]{write.gameKey, write.key}, String.valueOf(write.offset), write.closesField, now, ttl);
+            future.whenComplete((previous, throwable) -> {
+                if (throwable != null) {
+                    pendingBits.add(write);
                 }
+            });
+            writes.add(future);
+        }
+        return writes;
+    }
+
+    @Override
+    public Mono<Predicate<Question>> findSeenQuestions(Collection<String> usernames) {
+        return Flux.fromIterable(usernames)
+            .flatMap(this::findSeenQuestions)
+            .collectList()
+            .map(SeenQuestions::anyOf);
+    }
+
+    private Mono<SeenQuestions> findSeenQuestions(String username) {
+        final long now = System.currentTimeMillis();
+        CachedSeen cached = seenCache.get(username);
+        if (cached != null && now - cached.loadedAt < SEEN_MAX_AGE.toMillis()) {
+            return Mono.just(cached.seen);
+        }
+        // the filter is binary, so it is read as bytes rather than through the string codec
+        return guard("findSeenQuestions", readTimeout, getBytes(connections.get(questionReads).reactive(), seenKey(username)))
+            .filter(bytes -> bytes.length > 0)
+            .map(SeenQuestions::of)
+            .defaultIfEmpty(SeenQuestions.NONE)
+            .doOnNext(seen -> {
+                seenCache.remove(username);
+                seenCache.computeIfAbsent(username, k -> new CachedSeen(seen, now));
+            });
+    }
+
+    @Override
+    public Mono<Integer> findPlayer(String gameId, String username) {
+        // also loads whether the player was eliminated or answered on another node, then answers are checked locally
+        return guard("findPlayer", readTimeout, findPlayerScript.<List<Long>>eval(connections.hot().reactive(), ScriptOutputType.MULTI,
+                new String[]{gameKey(gameId), playersKey(gameId), eliminatedKey(gameId)}, gameId, username, shardTag(shard(gameId)))
+            .single())
+            .filter(player -> !player.isEmpty())
+            .map(player -> {
+                int ordinal = player.get(0).intValue();
+                // bits that are not loaded yet are loaded whole by the first answer
+                PlayerBits bits = playerBits.get(gameId);
+                if (bits != null && player.get(1) == 1L) {
+                    bits.eliminate(ordinal);
+                }
+                if (bits != null && player.get(3) == 1L) {
+                    bits.answer(player.get(2).intValue(), ordinal);
+                }
+                return ordinal;
+            });
+    }
+
+    /**
+     * Get a binary value as bytes rather than through the string codec, empty if the key doesn't exist
+     */
+    private static Mono<byte[]> getBytes(RedisClusterReactiveCommands<String, String> commands, String key) {
+        return commands.<byte[]>dispatch(CommandType.GET, new ByteArrayOutput<>(StringCodec.UTF8),
+                new CommandArgs<>(StringCodec.UTF8).addKey(key))
+            .next()
+            .defaultIfEmpty(new byte[0]);
+    }
+
+    @Override
+    public Mono<Boolean> markAnswered(String gameId, int round, int player) {
+        PlayerBits bits = playerBits.get(gameId);
+        if (bits != null) {
+            return Mono.just(markAnswered(bits, gameId, round, player));
+        }
+        return findPlayerBits(gameId, round).map(loaded -> markAnswered(loaded, gameId, round, player));
+    }
+
+    private boolean markAnswered(PlayerBits bits, String gameId, int round, int player) {
+        if (!bits.answer(round, player)) {
+            return false;
+        }
+        pendingBits.add(new BitWrite(answeredKey(gameId, round), player, gameKey(gameId), closesField(round)));
+        return true;
+    }
+
+    /**
+     * Load the players of a game that were eliminated or answered a round, when they are not on this node yet or were
+     * evicted. Bits set on this node that are not written yet are added to them.
+     */
+    private Mono<PlayerBits> findPlayerBits(String gameId, int round) {
+        // mutable, so read from the primary
+        var commands = connections.hot().reactive();
+        String eliminatedKey = eliminatedKey(gameId);
+        String answeredKey = answeredKey(gameId, round);
+        return guard("findPlayerBits", readTimeout, Mono.zip(getBytes(commands, eliminatedKey), getBytes(commands, answeredKey)))
+            .map(found -> {
+                PlayerBits bits = PlayerBits.of(found.getT1(), round, found.getT2());
+                for (BitWrite pending : pendingBits) {
+                    if (pending.key.equals(eliminatedKey)) {
+                        bits.eliminate(pending.offset);
+                    } else if (pending.key.equals(answeredKey)) {
+                        bits.answer(round, pending.offset);
+                    }
+                }
+                // another answer may have loaded them meanwhile
+                return playerBits.computeIfAbsent(gameId, k -> bits);
+            });
+    }
+
+    @Override
+    public void eliminatePlayer(String gameId, int player) {
+        // bits that are not loaded are only written, they are loaded with the elimination by the next answer
+        PlayerBits bits = playerBits.get(gameId);
+        if (bits == null || bits.eliminate(player)) {
+            pendingBits.add(new BitWrite(eliminatedKey(gameId), player, gameKey(gameId), ""));
+        }
+    }
+
+    @Override
+    public Mono<Integer> findPlayerCount(String gameId, int round) {
+        return guard("findPlayerCount", readTimeout, connections.hot().reactive().hget(gameKey(gameId), playersField(round)))
+            .map(Integer::parseInt);
+    }
+
+    @Override
+    public Mono<Game> addPlayer(String gameId, String username) {
+        var commands = connections.hot().reactive();
+        // join and rank the pending game atomically, so a game that is starting can't be pending again
+        return guard("addPlayer", writeTimeout, addPlayerScript.<List<Object>>eval(commands, ScriptOutputType.MULTI,
+                new String[]{gameKey(gameId), playersKey(gameId), pendingGamesKey(shard(gameId))},
+                gameId, username)
+            .single()
+            .filter(joined -> (Long) joined.get(0) >= 0L) // if the game is missing or started
+            // the player's seen questions are in another slot, so joining can't write them atomically. They are
+            // written again when the player joins again, a join that failed writing them can be retried.
+            .flatMap(joined -> {
+                String[] args = joined.stream().map(String::valueOf).toArray(String[]::new);
+                args[0] = String.valueOf(seenQuestionsTtl.toMillis());
+                return addSeenScript.eval(commands, ScriptOutputType.INTEGER, new String[]{seenKey(username)}, args)
+                    .onErrorResume(e -> journalSeen(seenKey(username), args, e))
+                    .doOnComplete(() -> seenCache.remove(username))
+                    .then((Long) joined.get(0) == 0L ? Mono.<Game>empty() : findGameWithCommands(gameId, commands));
+            }))
+            .doOnSuccess(g -> log.debug("Added player[{}] to Game[{}]", username, gameId));
+    }
+
+    /**
+     * Journal a player's seen questions that couldn't be written, so the join still succeeds
+     */
+    private <T> Flux<T> journalSeen(String seenKey, String[] args, Throwable e) {
+        if (journal == null || !CircuitBreaker.isFailure(e)) {
+            return Flux.error(e);
+        }
+        if (!journal.append(WriteJournal.Kind.seen, seenKey, args)) {
+            log.warn("Write journal is full, seen questions for {} are lost", seenKey);
+        }
+        return Flux.empty();
+    }
+
+    /**
+     * Renew this node's shard leases, and take or give back shards as nodes join and leave
+     */
+    @Scheduled(fixedDelay = "${trivia.redis.lease-renew-interval:3s}")
+    public void renewLeases() {
+        if (leases == null) {
+            return;
+        }
+        try {
+            circuit.call(() -> {
+                var commands = connections.bulk().sync();
+                // the scheduler of a shard taken over may have rounds due
+                for (int shard : leases.renew(commands)) {
+                    commands.publish(SCHEDULER_CHANNEL_KEY, String.valueOf(shard));
+                }
+                return null;
+            });
+        } catch (RepositoryUnavailableException e) {
+            // the leases lapse if the circuit stays open, and the shards move to nodes that can reach Redis
+        } catch (RuntimeException e) {
+            log.warn("Failed to renew shard leases", e);
+        }
+    }
+
+    private int[] scheduledShards() {
+        return leases == null ? allShards : leases.owned();
+    }
+
+    private boolean isScheduled(int shard) {
+        for (int scheduled : scheduledShards()) {
+            if (scheduled == shard) {
+                return true;
             }
-            commands.zrem(DELAYED_ROUNDS_KEY, value);
-            commands.publish(ROUNDS_CHANNEL_KEY, value);
-            commands.exec();
-        });
+        }
+        return false;
     }
 
     @Override
-    public void startPendingGames(Duration roundStartDelay, int minPlayers) {
-        // This supports polling so use sync for clarity
-        RedisCommands<String, String> commands = connection.sync();
-
-        List<String> pending = commands.zrangebyscore(GAME_PENDING_KEY,
-            Range.from(Range.Boundary.including(minPlayers), Range.Boundary.unbounded()),
-            Limit.from(100));
-
-        pending.forEach(gameId -> {
-            String gameKey = gameKey(gameId);
-            commands.watch(gameKey);
-            commands.multi();
-            commands.zrem(GAME_PENDING_KEY, gameId);
-            RoundEvent roundEvent = RoundEvent.builder()
-                .gameId(gameId)
-                .round(0)
-                .started(true)
-                .build();
-            commands.zadd(DELAYED_ROUNDS_KEY, ScoredValue.just(futureTimestamp(roundStartDelay), encoder.encodeRoundEvent(roundEvent)));
-            commands.publish(GAME_CHANNEL_KEY, gameId);
-            commands.exec();
-        });
+    public int advancePendingRounds(Duration roundStartDelay, Duration roundDuration, int batchSize) {
+        // sync for clarity, one batch per shard, on the bulk lane to keep it off the connections players use
+        int advanced = 0;
+        long next = Long.MAX_VALUE;
+        for (int shard : scheduledShards()) {
+            List<Object> result = evalScheduled("advancePendingRounds", advanceRoundsScript,
+                new String[]{delayedRoundsKey(shard)},
+                String.valueOf(Instant.now().toEpochMilli()),
+                String.valueOf(roundStartDelay.toMillis()),
+                String.valueOf(roundDuration.toMillis()),
+                String.valueOf(batchSize),
+                String.valueOf(finishedGameTtl.toMillis()),
+                shardTag(shard));
+            long due = (Long) result.get(0);
+            if (due >= 0) {
+                next = Math.min(next, due);
+            }
+            advanced += result.size() - 1;
+        }
+        this.nextRoundDue = next;
+        return advanced;
+    }
+
+    @Override
+    public int startPendingGames(Duration roundStartDelay, int minPlayers, int batchSize) {
+        // sync for clarity, one batch per shard
+        int started = 0;
+        long firstRound = futureTimestamp(roundStartDelay);
+        for (int shard : scheduledShards()) {
+            List<String> games = evalScheduled("startPendingGames", startGamesScript,
+                new String[]{pendingGamesKey(shard), delayedRoundsKey(shard)},
+                String.valueOf(minPlayers),
+                String.valueOf(firstRound),
+                String.valueOf(batchSize),
+                shardTag(shard));
+            started += games.size();
+        }
+        if (started > 0) {
+            this.nextRoundDue = Math.min(nextRoundDue, firstRound);
+        }
+        return started;
+    }
+
+    @Override
+    public int sweepAbandonedGames(int batchSize) {
+        // pending games expire on their own, only their entries in the pending games are left behind
+        int removed = 0;
+        for (int shard : scheduledShards()) {
+            String cursor = "0";
+            do {
+                List<Object> result = evalScheduled("sweepAbandonedGames", sweepPendingScript,
+                    new String[]{pendingGamesKey(shard)}, cursor, String.valueOf(batchSize), shardTag(shard));
+                cursor = (String) result.get(0);
+                removed += ((Long) result.get(1)).intValue();
+            } while (!"0".equals(cursor));
+        }
+        return removed;
     }
 
     @Override
@@ -262,33 +1223,349 @@ public class RedisGameRepository implements GameRepository {
         });
     }
 
+    @Override
+    public Optional<Instant> findNextRoundDue() {
+        long due = nextRoundDue;
+        return due == Long.MAX_VALUE ? Optional.empty() : Optional.of(Instant.ofEpochMilli(due));
+    }
+
+    @Override
+    public Mono<Void> wakeScheduler(String gameId) {
+        return guard("wakeScheduler", writeTimeout,
+            connections.hot().reactive().publish(SCHEDULER_CHANNEL_KEY, String.valueOf(shard(gameId)))).then();
+    }
+
+    @Override
+    public Flux<Integer> subscribeToSchedulerWakeups() {
+        var commands = subscribeToChannel(SCHEDULER_CHANNEL_KEY);
+        return commands.observeChannels().filter(channelMessage -> channelMessage.getChannel().equals(SCHEDULER_CHANNEL_KEY))
+            .map(channelMessage -> Integer.valueOf(channelMessage.getMessage()))
+            // only the node driving the shard runs its scheduler
+            .filter(this::isScheduled);
+    }
+
+    @Override
+    public Flux<String> subscribeToCategoriesChannel() {
+        var commands = subscribeToChannel(CATEGORIES_CHANNEL_KEY);
+        return commands.observeChannels().filter(channelMessage ->  channelMessage.getChannel().equals(CATEGORIES_CHANNEL_KEY))
+            .map(channelMessage -> channelMessage.getMessage());
+    }
+
+    private Flux<String> subscribeToInvalidations() {
+        // tracking is state of the connections, and is lost when either side reconnects. It is checked whenever a
+        // connection is activated, and turned on again if it was lost. The first time is before anything else
+        // subscribes to the pub/sub connection.
+        Flux<Object> lost = connections.activations()
+            .publishOn(Schedulers.boundedElastic())
+            .filter(activated -> !isTracking())
+            .cast(Object.class);
+        return Flux.concat(Mono.just(INVALIDATE_CHANNEL_KEY), lost)
+            .switchMap(trigger -> trackInvalidations())
+            .doOnNext(this::invalidate);
+    }
+
+    /**
+     * Turn on RESP2 client side caching, invalidations for keys read on the hot connections are sent to a new pub/sub
+     * connection, one that is not subscribed yet
+     */
+    private Flux<String> trackInvalidations() {
+        connections.closePubSub(INVALIDATE_CHANNEL_KEY);
+        long redirect = connections.pubSub(INVALIDATE_CHANNEL_KEY).sync().clientId();
+        List<RedisConnection> hot = connections.hotConnections();
+        long[] clients = new long[hot.size()];
+        for (int i = 0; i < clients.length; i++) {
+            var commands = hot.get(i).sync();
+            // off first, a connection that still tracks can't be redirected
+            commands.dispatch(CommandType.CLIENT, new StatusOutput<>(StringCodec.UTF8), new CommandArgs<>(StringCodec.UTF8)
+                .add("TRACKING").add("off"));
+            commands.dispatch(CommandType.CLIENT, new StatusOutput<>(StringCodec.UTF8), new CommandArgs<>(StringCodec.UTF8)
+                .add("TRACKING").add("on")
+                .add("REDIRECT").add(redirect)
+                .add("BCAST")
+                .add("PREFIX").add(GAME_KEY_PREFIX));
+            clients[i] = commands.clientId();
+        }
+        this.tracking = new Tracking(redirect, clients);
+        // anything read while tracking was lost may be stale
+        nearCache.clear();
+        var commands = subscribeToChannel(INVALIDATE_CHANNEL_KEY);
+        return commands.observeChannels().filter(channelMessage -> channelMessage.getChannel().equals(INVALIDATE_CHANNEL_KEY))
+            .map(channelMessage -> channelMessage.getMessage());
+    }
+
+    /**
+     * Whether the connections are the ones tracking was turned on for, a connection that reconnected has a new id
+     */
+    private boolean isTracking() {
+        Tracking current = this.tracking;
+        if (current == null) {
+            return false;
+        }
+        List<RedisConnection> hot = connections.hotConnections();
+        for (int i = 0; i < current.clients.length; i++) {
+            if (hot.get(i).sync().clientId() != current.clients[i]) {
+                return false;
+            }
+        }
+        // the pub/sub connection can't be asked while it is subscribed, the server is asked for it instead
+        String subscribers = connections.hot().sync().dispatch(CommandType.CLIENT, new ValueOutput<>(StringCodec.UTF8),
+            new CommandArgs<>(StringCodec.UTF8).add("LIST").add("TYPE").add("pubsub"));
+        return ("\n" + subscribers).contains("\nid=" + current.redirect + " ");
+    }
+
+    private void onRoundEvent(RoundEvent event) {
+        if (!event.getStarted()) {
+            // don't wait for the next flush, the round is complete and the next one counts the remaining players
+            writeBehind(answerTally.close(event.getGameId(), event.getRound()));
+        }
+        CachedGame cached = nearCache.get(event.getGameId());
+        if (cached == null) {
+            return;
+        }
+        if (event.getStarted()) {
+            cached.advanceTo(event.getRound());
+            // load the answer key before the first answer arrives
+            findAnswerKey(event.getGameId()).subscribe(
+                key -> {},
+                throwable -> log.warn("Failed to load answer key for Game[{}] Round[{}]", event.getGameId(), event.getRound(), throwable));
+        } else if (cached.totalRounds > 0 && event.getRound() + 1 >= cached.totalRounds) {
+            // the game is finished
+            nearCache.remove(event.getGameId());
+        }
+    }
+
+    /**
+     * Fail the operation if it takes longer than its budget, and fail it straight away while the circuit is open
+     */
+    private <T> Mono<T> guard(String operation, Duration budget, Mono<T> call) {
+        return circuit.protect(call.timeout(budget).onErrorMap(e -> timedOut(operation, budget, e)));
+    }
+
+    private <T> Flux<T> guard(String operation, Duration budget, Flux<T> call) {
+        // the budget is for the whole operation, not each element
+        return circuit.protect(call.collectList().timeout(budget).onErrorMap(e -> timedOut(operation, budget, e)))
+            .flatMapIterable(Function.identity());
+    }
+
+    /**
+     * Run a scheduler script on the bulk lane, which waits for its reply as long as the connection's timeout
+     */
+    private <T> T evalScheduled(String operation, RedisScript script, String[] keys, String... args) {
+        var commands = connections.bulk().sync();
+        return circuit.call(() -> {
+            try {
+                return script.eval(commands, ScriptOutputType.MULTI, keys, args);
+            } catch (RedisCommandTimeoutException e) {
+                throw new RepositoryTimeoutException(operation, schedulerTimeout, e);
+            }
+        });
+    }
+
+    private static Throwable timedOut(String operation, Duration budget, Throwable e) {
+        return e instanceof TimeoutException || e instanceof RedisCommandTimeoutException
+            ? new RepositoryTimeoutException(operation, budget, e)
+            : e;
+    }
+
+    /**
+     * Whether operations are failing straight away after too many failed in a row
+     */
+    public CircuitBreaker.State getCircuitState() {
+        return circuit.getState();
+    }
+
+    /**
+     * Read what never changes once a game is created, its round questions, where game reads are routed. Everything
+     * else about a game changes as it is played and is read from the primary, a replica may be behind.
+     */
+    private <T> Mono<T> readGame(Function<RedisClusterReactiveCommands<String, String>, Mono<T>> read) {
+        // a game created just now may not have reached the replica yet
+        return readAnywhere(gameReads, read);
+    }
+
+    /**
+     * Read where the routing sends it, and from the primary if a replica didn't find anything
+     */
+    private <T> Mono<T> readAnywhere(ReadRouting routing, Function<RedisClusterReactiveCommands<String, String>, Mono<T>> read) {
+        if (connections.isPrimary(routing)) {
+            return read.apply(connections.hot().reactive());
+        }
+        return read.apply(connections.get(routing).reactive()).switchIfEmpty(Mono.defer(() -> read.apply(connections.hot().reactive())));
+    }
+
+    private void invalidate(String key) {
+        // round questions never change once created, only the current round can be stale
+        int tagEnd = key.indexOf("}:");
+        if (key.startsWith(GAME_KEY_PREFIX) && tagEnd > 0) {
+            CachedGame cached = nearCache.get(key.substring(tagEnd + 2));
+            if (cached != null) {
+                cached.round = null;
+            }
+        }
+    }
+
+    private void cacheGame(String gameId, Map<String, String> fields) {
+        if (nearCacheMaintained && fields.containsKey(TOTAL_ROUNDS)) {
+            CachedGame cached = nearCache.computeIfAbsent(gameId, k -> new CachedGame());
+            cached.totalRounds = Integer.parseInt(fields.get(TOTAL_ROUNDS));
+            if (fields.containsKey(ROUND)) {
+                cached.advanceTo(Integer.parseInt(fields.get(ROUND)));
+            }
+        }
+    }
+
     private RedisPubSubReactiveCommands<String, String> subscribeToChannel(String channelKey) {
-        var commands = pubSubConnection.reactive();
+        var commands = connections.pubSub(channelKey).reactive();
         commands.subscribe(channelKey).subscribe();
         return commands;
     }
 
+    private static class Tracking {
+        // the pub/sub connection invalidations are sent to, and the hot connections that track, by client id
+        private final long redirect;
+        private final long[] clients;
+
+        Tracking(long redirect, long[] clients) {
+            this.redirect = redirect;
+            this.clients = clients;
+        }
+    }
+
+    private static class CachedSeen {
+        private final SeenQuestions seen;
+        private final long loadedAt;
+
+        CachedSeen(SeenQuestions seen, long loadedAt) {
+            this.seen = seen;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private static class BitWrite {
+        private final String key;
+        private final int offset;
+        // the game the bitmap expires with, and the field of when its round closes, empty if it lasts the whole game
+        private final String gameKey;
+        private final String closesField;
+
+        BitWrite(String key, int offset, String gameKey, String closesField) {
+            this.key = key;
+            this.offset = offset;
+            this.gameKey = gameKey;
+            this.closesField = closesField;
+        }
+    }
+
+    private static class CachedGame {
+        private final ConcurrentMap<Integer, Question> questions = new ConcurrentHashMap<>();
+        private volatile int totalRounds = -1;
+        private volatile Integer round;
+        private volatile AnswerKey answerKey;
+
+        synchronized void advanceTo(int round) {
+            // rounds only move forward, ignore stale reads that race with round events
+            if (this.round == null || this.round < round) {
+                this.round = round;
+            }
+        }
+    }
+
     private long futureTimestamp(Duration delay) {
         return Instant.now().plusMillis(delay.toMillis()).toEpochMilli();
     }
 
-    private String questionKey(String category) {
-        return String.format("%s%s", Q_KEY_PREFIX, category);
+    static String questionField(int round) {
+        return roundField(QUESTION_FIELDS, round, QUESTION_FIELD_SUFFIX);
+    }
+
+    static String playersField(int round) {
+        return roundField(PLAYERS_FIELDS, round, PLAYERS_FIELD_SUFFIX);
+    }
+
+    static String opensField(int round) {
+        return roundField(OPENS_FIELDS, round, OPENS_FIELD_SUFFIX);
+    }
+
+    static String closesField(int round) {
+        return roundField(CLOSES_FIELDS, round, CLOSES_FIELD_SUFFIX);
+    }
+
+    private static String roundField(String[] precomputed, int round, String suffix) {
+        return round >= 0 && round < precomputed.length ? precomputed[round] : ROUND_FIELD_PREFIX + round + suffix;
+    }
+
+    private static String[] roundFields(String suffix) {
+        String[] fields = new String[PRECOMPUTED_ROUNDS];
+        for (int round = 0; round < PRECOMPUTED_ROUNDS; round++) {
+            fields[round] = ROUND_FIELD_PREFIX + round + suffix;
+        }
+        return fields;
+    }
+
+    static String questionKey(String category) {
+        return Q_KEY_PREFIX + "{" + category + "}";
+    }
+
+    static String questionKey(String category, Difficulty difficulty) {
+        return questionKey(category) + ":" + difficulty.name();
+    }
+
+    private String questionIdKey(String id) {
+        return QUESTION_KEY_PREFIX + id;
+    }
+
+    static String categoryKey(String category) {
+        return CATEGORY_KEY_PREFIX + "{" + category + "}";
+    }
+
+    /**
+     * The shard of a game, which its keys and its entries in the scheduler queues are in
+     */
+    int shard(String gameId) {
+        return Math.floorMod(gameId.hashCode(), shards);
+    }
+
+    static String shardTag(int shard) {
+        return "{" + shard + "}:";
+    }
+
+    String pendingGamesKey(int shard) {
+        return GAME_PENDING_KEY + shardTag(shard);
+    }
+
+    String delayedRoundsKey(int shard) {
+        return DELAYED_ROUNDS_KEY + shardTag(shard);
+    }
+
+    String gameKey(String gameId) {
+        return GAME_KEY_PREFIX + shardTag(shard(gameId)) + gameId;
+    }
+
+    String playersKey(String gameId) {
+        return PLAYERS_KEY_PREFIX + shardTag(shard(gameId)) + gameId;
+    }
+
+    static String answerField(int round, int option) {
+        return round + ":" + option;
+    }
+
+    String answersKey(String gameId) {
+        return ANSWERS_KEY_PREFIX + shardTag(shard(gameId)) + gameId;
     }
 
-    private String gameKey(String gameId) {
-        return String.format("%s%s", GAME_KEY_PREFIX, gameId);
+    String answeredKey(String gameId, int round) {
+        return ANSWERED_KEY_PREFIX + shardTag(shard(gameId)) + gameId + ":" + round;
     }
 
-    private String playersKey(String gameId) {
-        return String.format("%s%s", PLAYERS_KEY_PREFIX, gameId);
+    String eliminatedKey(String gameId) {
+        return ELIMINATED_KEY_PREFIX + shardTag(shard(gameId)) + gameId;
     }
 
-    private String roundsKey(String gameId, int round) {
-        return String.format("%s%d:%s%s", ROUNDS_KEY_PREFIX, round, GAME_KEY_PREFIX, gameId);
+    static String seenKey(String username) {
+        return SEEN_KEY_PREFIX + username;
     }
 
     private String gameChannel(String gameId) {
-        return String.format("%s%s", GAME_CHANNEL_KEY, gameId);
+        return GAME_CHANNEL_KEY + gameId;
     }
 }
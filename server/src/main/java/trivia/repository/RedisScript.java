@@ -0,0 +1,90 @@
+package trivia.repository;
+
+import io.lettuce.core.LettuceStrings;
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.async.RedisScriptingAsyncCommands;
+import io.lettuce.core.api.reactive.RedisScriptingReactiveCommands;
+import io.lettuce.core.api.sync.RedisScriptingCommands;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * A Lua script loaded from the classpath and run with EVALSHA. The script is sent with EVAL only when the server
+ * has not cached it yet, e.g. after a restart or failover.
+ */
+class RedisScript {
+
+    private final String name;
+    private final String source;
+    private final String sha;
+
+    private RedisScript(String name, String source) {
+        this.name = Objects.requireNonNull(name);
+        this.source = Objects.requireNonNull(source);
+        this.sha = LettuceStrings.digest(source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Load {@code /scripts/<name>.lua}, declaring the given constants as locals so that key prefixes and field names
+     * are defined once, in Java. The included scripts are prepended, in order, to share local functions.
+     */
+    static RedisScript load(String name, Map<String, String> constants, String... includes) {
+        var source = new StringBuilder();
+        constants.forEach((k, v) -> source.append("local ").append(k).append(" = '")
+            .append(v.replace("\\", "\\\\").replace("'", "\\'")).append("'\n"));
+        for (String include : includes) {
+            source.append(read(include)).append('\n');
+        }
+        return new RedisScript(name, source.append(read(name)).toString());
+    }
+
+    private static String read(String name) {
+        try (InputStream is = RedisScript.class.getResourceAsStream("/scripts/" + name + ".lua")) {
+            if (is == null) {
+                throw new IllegalStateException("Missing script " + name);
+            }
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RepositoryExpection("Failed to load script " + name, e);
+        }
+    }
+
+    <T> T eval(RedisScriptingCommands<String, String> commands, ScriptOutputType type, String[] keys, String... args) {
+        try {
+            return commands.evalsha(sha, type, keys, args);
+        } catch (RedisNoScriptException e) {
+            return commands.eval(source, type, keys, args);
+        }
+    }
+
+    /**
+     * Run the script pipelined, falling back to EVAL out of order if the server has not cached it
+     */
+    <T> CompletableFuture<T> eval(RedisScriptingAsyncCommands<String, String> commands, ScriptOutputType type, String[] keys, String... args) {
+        return commands.<T>evalsha(sha, type, keys, args)
+            .<CompletionStage<T>>handle((result, e) -> e instanceof RedisNoScriptException
+                ? commands.<T>eval(source, type, keys, args)
+                : e != null ? CompletableFuture.<T>failedFuture(e) : CompletableFuture.completedFuture(result))
+            .thenCompose(Function.identity())
+            .toCompletableFuture();
+    }
+
+    <T> Flux<T> eval(RedisScriptingReactiveCommands<String, String> commands, ScriptOutputType type, String[] keys, String... args) {
+        return commands.<T>evalsha(sha, type, keys, args)
+            .onErrorResume(RedisNoScriptException.class, e -> commands.eval(source, type, keys, args));
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,12 @@
+package trivia.repository;
+
+import java.time.Duration;
+
+/**
+ * A repository operation took longer than its budget
+ */
+public class RepositoryTimeoutException extends RepositoryExpection {
+    public RepositoryTimeoutException(String operation, Duration budget, Throwable e) {
+        super(operation + " took longer than " + budget.toMillis() + "ms", e);
+    }
+}
@@ -0,0 +1,20 @@
+package trivia.repository;
+
+import java.time.Duration;
+
+/**
+ * The repository is refusing operations for a while after too many failed
+ */
+public class RepositoryUnavailableException extends RepositoryExpection {
+
+    private final Duration retryAfter;
+
+    public RepositoryUnavailableException(String msg, Duration retryAfter) {
+        super(msg, null);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
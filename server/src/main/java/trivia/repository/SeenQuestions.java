@@ -0,0 +1,85 @@
+package trivia.repository;
+
+import trivia.domain.Question;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A Bloom filter of the questions a player has been dealt, by question id, at a fixed size per player. Laid out as
+ * a Redis bitmap, bit 0 is the high bit of the first byte, so the Lua scripts can set bits with SETBIT.
+ * <p>
+ * Question ids are already uniformly distributed hashes, so the bit offsets are derived from the two halves of the
+ * id by double hashing rather than hashing again. {@code add_seen.lua} computes the same offsets.
+ */
+class SeenQuestions {
+
+    // 512 bytes per player, about a 2% false positive rate after 500 questions
+    static final int BITS = 4096;
+    static final int HASHES = 4;
+
+    static final SeenQuestions NONE = new SeenQuestions(new byte[0]);
+
+    private final byte[] bitmap;
+
+    SeenQuestions() {
+        this(new byte[BITS / 8]);
+    }
+
+    private SeenQuestions(byte[] bitmap) {
+        this.bitmap = bitmap;
+    }
+
+    /**
+     * @param bitmap the filter as read from Redis, missing trailing bytes are clear
+     */
+    static SeenQuestions of(byte[] bitmap) {
+        return bitmap == null || bitmap.length == 0 ? NONE : new SeenQuestions(Arrays.copyOf(bitmap, BITS / 8));
+    }
+
+    boolean mightContain(String questionId) {
+        for (int offset : offsets(questionId)) {
+            int i = offset >>> 3;
+            if (i >= bitmap.length || (bitmap[i] & (0x80 >>> (offset & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void add(String questionId) {
+        for (int offset : offsets(questionId)) {
+            bitmap[offset >>> 3] |= (byte) (0x80 >>> (offset & 7));
+        }
+    }
+
+    /**
+     * @return whether any of the players may have seen a question
+     */
+    static Predicate<Question> anyOf(List<SeenQuestions> players) {
+        if (players.isEmpty()) {
+            return q -> false;
+        }
+        return q -> {
+            String id = QuestionId.of(q);
+            for (SeenQuestions seen : players) {
+                if (seen.mightContain(id)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    static int[] offsets(String questionId) {
+        long h1 = Long.parseLong(questionId, 0, 8, 16);
+        // odd, so coprime with the power of two size and the offsets never repeat
+        long h2 = Long.parseLong(questionId, 8, 16, 16) | 1;
+        int[] offsets = new int[HASHES];
+        for (int i = 0; i < HASHES; i++) {
+            offsets[i] = (int) ((h1 + i * h2) % BITS);
+        }
+        return offsets;
+    }
+}
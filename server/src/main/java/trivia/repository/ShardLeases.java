@@ -0,0 +1,133 @@
+package trivia.repository;
+
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.cluster.api.sync.RedisClusterCommands;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Shares the scheduler shards between nodes, each shard is driven by the one node that holds its lease. Nodes
+ * register with a heartbeat, then each renews its leases, gives back the shards it holds beyond its fair share of
+ * the live nodes and takes free shards up to it, so shards move to a node that joins and away from one that leaves.
+ * A node that can't renew stops driving its shards once their leases may have expired, and other nodes take them
+ * once they have.
+ * <p>
+ * Leases spread the work rather than guard it. The scheduler scripts are atomic, so a shard driven by two nodes
+ * while its lease changes hands is only contended, not processed twice.
+ */
+@Slf4j
+class ShardLeases {
+
+    // lease:{<shard>}: in the shard's slot, with the id of the node that holds it
+    static final String LEASE_KEY_PREFIX = "lease:";
+    // node ids by when their heartbeat expires
+    static final String NODES_KEY = "scheduler_nodes:";
+
+    private final String leaseKeyPrefix;
+    private final String nodesKey;
+    private final int shards;
+    private final Duration leaseDuration;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final RedisScript registerNodeScript;
+    private final RedisScript takeLeaseScript;
+    private final RedisScript releaseLeaseScript;
+    // as of the last renewal, in order
+    private volatile int[] owned = new int[0];
+    private volatile long validUntil;
+
+    ShardLeases(String namespace, int shards, Duration leaseDuration) {
+        this.leaseKeyPrefix = namespace + LEASE_KEY_PREFIX;
+        this.nodesKey = namespace + NODES_KEY;
+        this.shards = shards;
+        this.leaseDuration = leaseDuration;
+        this.registerNodeScript = RedisScript.load("register_node", Map.of());
+        this.takeLeaseScript = RedisScript.load("take_lease", Map.of());
+        this.releaseLeaseScript = RedisScript.load("release_lease", Map.of());
+    }
+
+    String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * The shards this node drives, none once its leases may have expired without being renewed
+     */
+    int[] owned() {
+        return System.currentTimeMillis() < validUntil ? owned : new int[0];
+    }
+
+    /**
+     * Register this node, renew its leases and take or give back shards towards its fair share
+     * @return the shards taken, that this node didn't hold before
+     */
+    synchronized List<Integer> renew(RedisClusterCommands<String, String> commands) {
+        // leases taken from here on last at least until then
+        long now = System.currentTimeMillis();
+        long ttl = leaseDuration.toMillis();
+        long nodes = registerNodeScript.<Long>eval(commands, ScriptOutputType.INTEGER, new String[]{nodesKey},
+            nodeId, String.valueOf(now), String.valueOf(now + ttl));
+        int share = (int) ((shards + nodes - 1) / nodes);
+
+        List<Integer> held = new ArrayList<>();
+        for (int shard : owned) {
+            if (take(commands, shard)) {
+                held.add(shard);
+            } else {
+                log.info("Lost lease of shard {}", shard);
+            }
+        }
+        while (held.size() > share) {
+            int shard = held.remove(held.size() - 1);
+            release(commands, shard);
+            log.info("Released shard {} to the other {} nodes", shard, nodes - 1);
+        }
+        // each node starts looking at a different shard, so nodes don't all race for the same free ones
+        List<Integer> taken = new ArrayList<>();
+        int start = Math.floorMod(nodeId.hashCode(), shards);
+        for (int i = 0; i < shards && held.size() < share; i++) {
+            int shard = (start + i) % shards;
+            if (!held.contains(shard) && take(commands, shard)) {
+                held.add(shard);
+                taken.add(shard);
+                log.info("Took lease of shard {}", shard);
+            }
+        }
+        Collections.sort(held);
+        this.owned = held.stream().mapToInt(Integer::intValue).toArray();
+        this.validUntil = now + ttl;
+        return taken;
+    }
+
+    /**
+     * Give back every lease and leave, so other nodes take the shards straight away
+     */
+    synchronized void release(RedisClusterCommands<String, String> commands) {
+        int[] held = owned;
+        this.owned = new int[0];
+        this.validUntil = 0;
+        for (int shard : held) {
+            release(commands, shard);
+        }
+        commands.zrem(nodesKey, nodeId);
+    }
+
+    private boolean take(RedisClusterCommands<String, String> commands, int shard) {
+        Long taken = takeLeaseScript.eval(commands, ScriptOutputType.INTEGER, new String[]{leaseKey(shard)},
+            nodeId, String.valueOf(leaseDuration.toMillis()));
+        return taken == 1L;
+    }
+
+    private void release(RedisClusterCommands<String, String> commands, int shard) {
+        releaseLeaseScript.eval(commands, ScriptOutputType.INTEGER, new String[]{leaseKey(shard)}, nodeId);
+    }
+
+    String leaseKey(int shard) {
+        return leaseKeyPrefix + RedisGameRepository.shardTag(shard);
+    }
+}
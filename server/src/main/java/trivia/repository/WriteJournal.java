@@ -0,0 +1,163 @@
+package trivia.repository;
+
+import lombok.Value;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A node local, append only journal of writes that couldn't be made while Redis was unreachable, in a memory mapped
+ * file of a fixed size. Entries are numbered in the order they were appended, and read back in that order to be
+ * replayed. The journal only forgets entries once they are replayed, so a node that stops during an outage replays
+ * them when it starts again, and the space is reused once everything is replayed.
+ * <p>
+ * The file starts with a header of the node id, the next entry number, where replaying continues from and where the
+ * next entry is written. Each entry is its length, number, kind, key and arguments.
+ */
+class WriteJournal implements AutoCloseable {
+
+    enum Kind {
+        // ARGV field, count
+        answer,
+        // ARGV offset
+        bit,
+        // ARGV ttl, question ids
+        seen
+    }
+
+    @Value
+    static class Entry {
+        long seq;
+        Kind kind;
+        String key;
+        List<String> args;
+        // where the next entry starts
+        int end;
+    }
+
+    private static final int NODE_ID = 0;
+    private static final int NEXT_SEQ = 8;
+    private static final int REPLAYED = 16;
+    private static final int WRITTEN = 20;
+    private static final int HEADER_SIZE = 24;
+    private static final Kind[] KINDS = Kind.values();
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private WriteJournal(FileChannel channel, MappedByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static WriteJournal open(Path path, int size) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean created = channel.size() < HEADER_SIZE;
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, created ? size : channel.size()));
+        if (created) {
+            // the id tells this node's replayed entries apart from other nodes'
+            buffer.putLong(NODE_ID, ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE));
+            buffer.putLong(NEXT_SEQ, 1);
+            buffer.putInt(REPLAYED, HEADER_SIZE);
+            buffer.putInt(WRITTEN, HEADER_SIZE);
+        }
+        return new WriteJournal(channel, buffer);
+    }
+
+    long getNodeId() {
+        return buffer.getLong(NODE_ID);
+    }
+
+    /**
+     * @return false if the journal is full
+     */
+    synchronized boolean append(Kind kind, String key, String... args) {
+        int start = buffer.getInt(WRITTEN);
+        long seq = buffer.getLong(NEXT_SEQ);
+        try {
+            buffer.position(start + 4);
+            buffer.putLong(seq);
+            buffer.put((byte) kind.ordinal());
+            putString(key);
+            buffer.putShort((short) args.length);
+            for (String arg : args) {
+                putString(arg);
+            }
+        } catch (BufferOverflowException e) {
+            return false;
+        }
+        int end = buffer.position();
+        buffer.putInt(start, end - start);
+        // the entry is complete before the header points past it
+        buffer.putLong(NEXT_SEQ, seq + 1);
+        buffer.putInt(WRITTEN, end);
+        return true;
+    }
+
+    synchronized boolean hasPending() {
+        return buffer.getInt(REPLAYED) < buffer.getInt(WRITTEN);
+    }
+
+    /**
+     * The oldest entries not replayed yet, in order
+     */
+    synchronized List<Entry> pending(int max) {
+        List<Entry> entries = new ArrayList<>();
+        int position = buffer.getInt(REPLAYED);
+        int written = buffer.getInt(WRITTEN);
+        while (position < written && entries.size() < max) {
+            int end = position + buffer.getInt(position);
+            buffer.position(position + 4);
+            long seq = buffer.getLong();
+            Kind kind = KINDS[buffer.get()];
+            String key = getString();
+            int n = buffer.getShort();
+            List<String> args = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                args.add(getString());
+            }
+            entries.add(new Entry(seq, kind, key, args, end));
+            position = end;
+        }
+        return entries;
+    }
+
+    /**
+     * Forget the entries up to and including this one
+     */
+    synchronized void replayed(Entry last) {
+        if (last.getEnd() >= buffer.getInt(WRITTEN)) {
+            // everything is replayed, start again at the beginning
+            buffer.putInt(REPLAYED, HEADER_SIZE);
+            buffer.putInt(WRITTEN, HEADER_SIZE);
+        } else {
+            buffer.putInt(REPLAYED, last.getEnd());
+        }
+    }
+
+    private void putString(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private String getString() {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
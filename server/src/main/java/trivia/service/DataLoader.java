@@ -9,9 +9,10 @@ import io.micronaut.scheduling.annotation.Async;
 import io.micronaut.discovery.event.ServiceReadyEvent;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import trivia.TriviaConfig;
 import trivia.domain.Question;
-import trivia.repository.RedisGameRepository;
+import trivia.repository.GameRepository;
 
 import javax.inject.Singleton;
 import java.io.IOException;
@@ -27,11 +28,11 @@ import java.util.stream.Stream;
 @Requires(notEnv = Environment.TEST)
 public class DataLoader implements ApplicationEventListener<ServiceReadyEvent> {
 
-    private final RedisGameRepository repository;
+    private final GameRepository repository;
     private final ObjectMapper mapper;
     private final Path dataPath;
 
-    public DataLoader(ObjectMapper mapper, RedisGameRepository repository, TriviaConfig config) {
+    public DataLoader(ObjectMapper mapper, GameRepository repository, TriviaConfig config) {
         this.repository = Objects.requireNonNull(repository);
         this.mapper = Objects.requireNonNull(mapper);
         this.dataPath = Path.of(config.getDataPath());
@@ -40,9 +41,14 @@ public class DataLoader implements ApplicationEventListener<ServiceReadyEvent> {
     @Async
     @Override
     public void onApplicationEvent(final ServiceReadyEvent event) {
-        if (this.repository.listCategories().single().blockOptional().isEmpty()) {
+        if (!this.repository.listCategories().hasElements().block()) {
             log.info("Loading data at startup from {}", this.dataPath.toAbsolutePath());
-            loadQuestions().flatMap(repository::save)
+            loadQuestions().flatMap(q -> repository.save(q)
+                    .onErrorResume(IllegalArgumentException.class, e -> {
+                        // skip the question rather than stop loading the rest
+                        log.warn("Cannot save question. {}", e.getMessage());
+                        return Mono.empty();
+                    }))
                 .subscribe(
                     q -> log.debug("Saved question {}.", q),
                     throwable -> log.error("Error saving question.", throwable));
@@ -6,6 +6,7 @@ import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import trivia.TriviaConfig;
+import trivia.domain.AnswerOptions;
 import trivia.domain.Game;
 import trivia.domain.Question;
 import trivia.domain.Round;
@@ -13,7 +14,7 @@ import trivia.domain.RoundEvent;
 import trivia.repository.GameRepository;
 
 import javax.inject.Singleton;
-import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -25,10 +26,13 @@ public class DefaultGameService implements GameService {
     @Getter
     private final int minPlayers;
 
+    private final int batchSize;
+
     private final GameRepository repository;
 
     public DefaultGameService(GameRepository gameRepository, TriviaConfig config) {
         this.minPlayers = config.getMinimumPlayersPerGame();
+        this.batchSize = config.getSchedulerBatchSize();
         this.repository = Objects.requireNonNull(gameRepository);
     }
 
@@ -50,7 +54,15 @@ public class DefaultGameService implements GameService {
 
     @Override
     public Mono<Game> joinGame(String gameId, String username, String sessionId) {
-        return this.repository.addPlayer(gameId, username);
+        return this.repository.addPlayer(gameId, username)
+            // the game can start, don't leave it until the scheduler next runs. Every join from the minimum on, in case
+            // the wake up for the join that reached it was lost.
+            .flatMap(game -> game.getPlayers() < minPlayers ? Mono.just(game) : this.repository.wakeScheduler(gameId)
+                .onErrorResume(e -> {
+                    log.warn("Failed to wake the scheduler for game[{}]", gameId, e);
+                    return Mono.empty();
+                })
+                .thenReturn(game));
     }
 
     @Override
@@ -61,6 +73,7 @@ public class DefaultGameService implements GameService {
                 return this.repository.findPlayerCount(gameId, round).map(c -> Round.builder()
                     .number(round)
                     .question(q)
+                    .options(AnswerOptions.of(q, gameId, round))
                     .players(c)
                     .build());
             });
@@ -68,16 +81,53 @@ public class DefaultGameService implements GameService {
 
 
     @Override
-    public Mono<Boolean> answerQuestion(String gameId, String answer) {
-        return this.repository.findGame(gameId)
-            .flatMap(g -> this.repository.findQuestionForRound(gameId, g.getRound())
-                .doOnSuccess(q -> this.repository.countAnswer(gameId, g.getRound(), answer))
-                .map(q -> q.getCorrectAnswer().equals(answer)));
+    public Mono<Integer> findPlayer(String gameId, String username) {
+        return this.repository.findPlayer(gameId, username);
+    }
+
+    @Override
+    public Mono<Boolean> answerQuestion(String gameId, int player, int answer) {
+        final long now = System.currentTimeMillis();
+        // the answer key and player bits are kept on this node, so this doesn't wait on the repository once the
+        // round is loaded
+        return this.repository.findAnswerKey(gameId)
+            .filterWhen(key -> this.repository.markAnswered(gameId, key.getRound(), player)
+                .doOnNext(marked -> {
+                    if (!marked) {
+                        log.debug("Dropped answer for game[{}] round[{}] from player[{}]", gameId, key.getRound(), player);
+                    }
+                }))
+            .map(key -> {
+                boolean correct = false;
+                if (!key.isOpen(now)) {
+                    log.debug("Late answer for game[{}] round[{}]", gameId, key.getRound());
+                } else if (!key.isOption(answer)) {
+                    log.debug("Invalid answer for game[{}] round[{}]: {}", gameId, key.getRound(), answer);
+                } else {
+                    this.repository.countAnswer(gameId, key.getRound(), answer);
+                    correct = answer == key.getCorrectIndex();
+                }
+                if (!correct) {
+                    this.repository.eliminatePlayer(gameId, player);
+                }
+                return correct;
+            });
     }
 
     @Override
     public Mono<Map<String, Integer>> findStats(String gameId, int round) {
-        throw new UnsupportedOperationException("fix me");
+        // one counter per answer option, so this is the same cost during and after the round
+        return this.repository.findQuestionForRound(gameId, round)
+            .map(q -> AnswerOptions.of(q, gameId, round))
+            .flatMap(options -> this.repository.findAnswerCounts(gameId, round, options.size())
+                .map(counts -> {
+                    Map<String, Integer> stats = new LinkedHashMap<>();
+                    for (int i = 0; i < counts.length; i++) {
+                        // merge in case a question repeats an answer
+                        stats.merge(options.getAnswers().get(i), counts[i], Integer::sum);
+                    }
+                    return stats;
+                }));
     }
 
     @Override
@@ -90,12 +140,11 @@ public class DefaultGameService implements GameService {
         return repository.subscribeToRoundsChannel();
     }
 
-    @Scheduled(fixedDelay = "1s", initialDelay = "1s")
-    public void pollPersistentTasks() {
-        log.info("poll");
-        Duration roundDuration = Duration.ofSeconds(15);
-        Duration delayStartRound = Duration.ofSeconds(3);
-        repository.advancePendingRounds(delayStartRound, roundDuration);
-        repository.startPendingGames(delayStartRound, minPlayers);
+    @Scheduled(fixedDelay = "${trivia.sweeper-interval:1m}", initialDelay = "${trivia.sweeper-interval:1m}")
+    public void sweepAbandonedGames() {
+        int removed = repository.sweepAbandonedGames(batchSize);
+        if (removed > 0) {
+            log.info("Removed {} abandoned games", removed);
+        }
     }
 }
@@ -1,35 +1,218 @@
 package trivia.service;
 
+import io.micronaut.scheduling.annotation.Scheduled;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import trivia.TriviaConfig;
+import trivia.domain.Difficulty;
 import trivia.domain.Question;
 import trivia.repository.GameRepository;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Singleton;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
+@Slf4j
 @Singleton
-public class DefaultQuestionService implements QuestionService {
+public class DefaultQuestionService implements QuestionService, AutoCloseable {
+
+    // upper bound on how stale the categories can be if a change notification is missed
+    static final Duration CATEGORIES_MAX_AGE = Duration.ofMinutes(1);
+
+    // a category keeps as many question packs as games are created in this many refills
+    static final int PACK_HORIZON = 5;
+
+    // questions allocated per round for a game between known players, to choose unseen questions from
+    static final int SEEN_CANDIDATES = 3;
 
     private final GameRepository repository;
     private final int numRounds;
+    private final int maxPacks;
+    // only categories games were created in, so the pools are bounded by the categories that exist
+    private final ConcurrentMap<String, PackPool> packPools = new ConcurrentHashMap<>();
+
+    private volatile Mono<List<String>> categories;
+    private Disposable categoryEvents;
 
     public DefaultQuestionService(GameRepository repository, TriviaConfig config) {
         this.repository = Objects.requireNonNull(repository);
         this.numRounds = config.getRoundsPerGame();
+        this.maxPacks = config.getMaxQuestionPacks();
+        this.categories = loadCategories();
+    }
+
+    @PostConstruct
+    public void initialize() {
+        // drop the snapshot whenever a new category is registered
+        this.categoryEvents = repository.subscribeToCategoriesChannel()
+            .doOnNext(c -> {
+                log.debug("Category[{}] registered", c);
+                this.categories = loadCategories();
+            })
+            .subscribe();
+    }
+
+    @PreDestroy
+    @Override
+    public void close() {
+        if (this.categoryEvents != null) {
+            this.categoryEvents.dispose();
+        }
     }
 
+    /**
+     * List categories from an in-process snapshot, sorted by name
+     */
     @Override
     public Flux<String> listCategories() {
-        return repository.listCategories();
+        return categories.flatMapIterable(Function.identity());
     }
 
+    /**
+     * Take a ready made pack of questions, or allocate one from the repository when none is ready
+     */
     @Override
     public Mono<List<Question>> allocateQuestions(String category) {
-        return repository.allocateQuestions(category, numRounds).collectList()
+        PackPool pool = packPools.get(category);
+        if (pool != null) {
+            pool.taken.increment();
+            List<Question> pack = pool.packs.poll();
+            if (pack != null) {
+                return Mono.just(pack);
+            }
+        }
+        // e.g. the first game in the category, start keeping packs for it once it's known to have enough questions
+        return allocatePacks(category, 1)
+            .map(packs -> {
+                if (pool == null) {
+                    packPools.computeIfAbsent(category, k -> new PackPool(maxPacks)).taken.increment();
+                }
+                return packs.get(0);
+            })
+            .switchIfEmpty(Mono.error(() -> new InsufficientDataException("Not enough questions to allocate " + numRounds)));
+    }
+
+    /**
+     * Sample more questions than needed and allocate the ones none of the players has seen, the rest are left for
+     * other games. Packs are not used, they can't be chosen from.
+     */
+    @Override
+    public Mono<List<Question>> allocateQuestions(String category, Collection<String> players) {
+        if (players.isEmpty()) {
+            return allocateQuestions(category);
+        }
+        return repository.findSeenQuestions(players)
+            .zipWith(repository.sampleQuestions(category, numRounds * SEEN_CANDIDATES).collectList())
+            .map(tuple -> {
+                Predicate<Question> seen = tuple.getT1();
+                List<Question> questions = new ArrayList<>(numRounds);
+                List<Question> repeats = new ArrayList<>();
+                for (Question q : tuple.getT2()) {
+                    if (questions.size() == numRounds) {
+                        break;
+                    }
+                    (seen.test(q) ? repeats : questions).add(q);
+                }
+                // repeat questions rather than fail
+                for (int i = 0; questions.size() < numRounds && i < repeats.size(); i++) {
+                    questions.add(repeats.get(i));
+                }
+                return questions;
+            })
+            .filter(qs -> qs.size() == numRounds)
+            .flatMap(qs -> repository.allocateSampled(category, qs).thenReturn(qs))
+            .switchIfEmpty(Mono.error(() -> new InsufficientDataException("Not enough questions to allocate " + numRounds)));
+    }
+
+    /**
+     * Allocate a question of each round's difficulty from the category's difficulty indexes. A profile shorter than the
+     * game is stretched, so {@code [easy, medium, hard]} gives a game a third of each in that order.
+     */
+    @Override
+    public Mono<List<Question>> allocateQuestionsByDifficulty(String category, List<Difficulty> profile) {
+        if (profile.isEmpty()) {
+            return allocateQuestions(category);
+        }
+        List<Difficulty> rounds = new ArrayList<>(numRounds);
+        for (int round = 0; round < numRounds; round++) {
+            rounds.add(profile.get(round * profile.size() / numRounds));
+        }
+        return repository.allocateQuestions(category, rounds)
+            .collectList()
             .filter(qs -> qs.size() == numRounds)
             .switchIfEmpty(Mono.error(() -> new InsufficientDataException("Not enough questions to allocate " + numRounds)));
     }
+
+    /**
+     * Top up the question packs of each category, to as many as were taken in the last {@link #PACK_HORIZON}
+     * refills on average. All the packs a category is short of are allocated at once, so they never overlap.
+     */
+    @Scheduled(fixedDelay = "${trivia.question-pack-interval:1s}", initialDelay = "${trivia.question-pack-interval:1s}")
+    public void refillQuestionPacks() {
+        packPools.forEach((category, pool) -> {
+            int missing = pool.target() - pool.packs.size();
+            if (missing > 0 && pool.refilling.compareAndSet(false, true)) {
+                allocatePacks(category, missing)
+                    .doFinally(s -> pool.refilling.set(false))
+                    .subscribe(
+                        packs -> packs.forEach(pool.packs::offer),
+                        throwable -> log.warn("Failed to refill question packs for Category[{}]", category, throwable));
+            }
+        });
+    }
+
+    private Mono<List<List<Question>>> allocatePacks(String category, int n) {
+        // one allocation split into packs, a short allocation only fills the packs it can
+        return repository.allocateQuestions(category, numRounds * n).collectList()
+            .map(qs -> {
+                List<List<Question>> packs = new ArrayList<>(n);
+                for (int i = 0; i + numRounds <= qs.size(); i += numRounds) {
+                    packs.add(List.copyOf(qs.subList(i, i + numRounds)));
+                }
+                return packs;
+            })
+            .filter(packs -> !packs.isEmpty());
+    }
+
+    private Mono<List<String>> loadCategories() {
+        // only successful loads are kept
+        return Flux.defer(repository::listCategories)
+            .sort()
+            .collectList()
+            .cache(v -> CATEGORIES_MAX_AGE, e -> Duration.ZERO, () -> Duration.ZERO);
+    }
+
+    private static class PackPool {
+        private final int maxPacks;
+        private final BlockingQueue<List<Question>> packs;
+        private final LongAdder taken = new LongAdder();
+        private final AtomicBoolean refilling = new AtomicBoolean();
+        // packs taken per refill, smoothed. Only used by the refill, which never overlaps itself.
+        private double rate;
+
+        PackPool(int maxPacks) {
+            this.maxPacks = maxPacks;
+            this.packs = new ArrayBlockingQueue<>(maxPacks);
+        }
+
+        int target() {
+            rate = 0.7 * rate + 0.3 * taken.sumThenReset();
+            return (int) Math.min(maxPacks, Math.max(1, Math.ceil(rate * PACK_HORIZON)));
+        }
+    }
 }
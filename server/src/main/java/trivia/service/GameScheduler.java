@@ -0,0 +1,128 @@
+package trivia.service;
+
+import io.micronaut.context.annotation.Context;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.scheduling.TaskExecutors;
+import io.micronaut.scheduling.TaskScheduler;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import trivia.TriviaConfig;
+import trivia.repository.GameRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Named;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Starts games and advances their rounds when they are due, instead of polling. It sleeps until the next delayed round
+ * of the shards this node schedules is due, and is woken early when a game has enough players to start or this node
+ * takes over a shard. It runs at least every {@code schedulerMaxSleep} in case a wakeup is missed.
+ */
+@Slf4j
+@Context
+@Requires(property = "trivia.scheduler-enabled", notEquals = "false")
+public class GameScheduler implements AutoCloseable {
+
+    // how long to wait before trying again after the repository failed
+    static final Duration RETRY_DELAY = Duration.ofSeconds(1);
+
+    private final GameRepository repository;
+    private final TaskScheduler taskScheduler;
+    private final int minPlayers;
+    private final int batchSize;
+    private final Duration roundDuration;
+    private final Duration roundStartDelay;
+    private final long maxSleep;
+    private final Object polling = new Object();
+
+    // the next run and when it is due, Long.MAX_VALUE while a run is deciding when the next is
+    private ScheduledFuture<?> next;
+    private long nextAt = Long.MAX_VALUE;
+    private boolean closed;
+    private Disposable wakeups;
+
+    public GameScheduler(GameRepository repository, TriviaConfig config, @Named(TaskExecutors.SCHEDULED) TaskScheduler taskScheduler) {
+        this.repository = Objects.requireNonNull(repository);
+        this.taskScheduler = Objects.requireNonNull(taskScheduler);
+        this.minPlayers = config.getMinimumPlayersPerGame();
+        this.batchSize = config.getSchedulerBatchSize();
+        this.roundDuration = config.getRoundDuration();
+        this.roundStartDelay = config.getRoundStartDelay();
+        this.maxSleep = config.getSchedulerMaxSleep().toMillis();
+    }
+
+    @PostConstruct
+    public void initialize() {
+        this.wakeups = repository.subscribeToSchedulerWakeups().subscribe(
+            shard -> wakeAt(0),
+            throwable -> log.error("Scheduler wakeups failed, running every {}ms", maxSleep, throwable));
+        wakeAt(0);
+    }
+
+    @PreDestroy
+    @Override
+    public synchronized void close() {
+        this.closed = true;
+        if (this.wakeups != null) {
+            this.wakeups.dispose();
+        }
+        if (this.next != null) {
+            this.next.cancel(false);
+        }
+    }
+
+    /**
+     * Start the games that have enough players and advance the rounds that are due, in batches while there may be a
+     * backlog
+     */
+    public void pollPersistentTasks() {
+        // a wakeup while running runs again straight after, rather than alongside
+        synchronized (polling) {
+            int advanced;
+            do {
+                advanced = repository.advancePendingRounds(roundStartDelay, roundDuration, batchSize);
+            } while (advanced >= batchSize);
+            int started;
+            do {
+                started = repository.startPendingGames(roundStartDelay, minPlayers, batchSize);
+            } while (started >= batchSize);
+        }
+    }
+
+    private void run() {
+        synchronized (this) {
+            this.nextAt = Long.MAX_VALUE;
+        }
+        long wake;
+        try {
+            pollPersistentTasks();
+            long latest = System.currentTimeMillis() + maxSleep;
+            wake = repository.findNextRoundDue()
+                .map(Instant::toEpochMilli)
+                .map(due -> Math.min(due, latest))
+                .orElse(latest);
+        } catch (RuntimeException e) {
+            log.warn("Failed to run the scheduler, retrying in {}ms", RETRY_DELAY.toMillis(), e);
+            wake = System.currentTimeMillis() + RETRY_DELAY.toMillis();
+        }
+        wakeAt(wake);
+    }
+
+    /**
+     * Run at the given time (epoch ms), unless a run is already due sooner
+     */
+    private synchronized void wakeAt(long at) {
+        if (closed || at >= nextAt) {
+            return;
+        }
+        if (next != null) {
+            next.cancel(false);
+        }
+        this.nextAt = at;
+        this.next = taskScheduler.schedule(Duration.ofMillis(Math.max(0, at - System.currentTimeMillis())), this::run);
+    }
+}
@@ -20,8 +20,28 @@ public interface GameService {
 
     Mono<Round> findRound(String gameId, int round);
 
-    Mono<Boolean> answerQuestion(String gameId, String answer);
-
+    /**
+     * Find the ordinal of a player in a game, which is how the player answers
+     * @return the ordinal, or empty if the player is not in the game
+     */
+    Mono<Integer> findPlayer(String gameId, String username);
+
+    /**
+     * Answer the current round of a game. A player answers each round once, and is eliminated by any answer that is
+     * not correct, including one that arrives after the round closed or is not one of the round's options.
+     * @param player the ordinal of the player
+     * @param answer the index of the answer in the round's answer options
+     * @return whether the answer is correct, answers outside the round are never correct and not counted. Empty if
+     * the game has not started, or the answer was dropped because the player already answered or was eliminated.
+     */
+    Mono<Boolean> answerQuestion(String gameId, int player, int answer);
+
+    /**
+     * Count the answers to a round, so far if the round is not complete. The counts of a running round are eventually
+     * consistent, answers counted on other nodes show up after they are written behind, so two nodes may report
+     * different counts until then.
+     * @return the number of times each answer was given, in option order
+     */
     Mono<Map<String, Integer>> findStats(String gameId, int round);
 
     Flux<String> subscribeToGameChannel();
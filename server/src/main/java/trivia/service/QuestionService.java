@@ -2,8 +2,10 @@ package trivia.service;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import trivia.domain.Difficulty;
 import trivia.domain.Question;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface QuestionService {
@@ -16,4 +18,21 @@ public interface QuestionService {
      * @return the questions
      */
     Mono<List<Question>> allocateQuestions(String category);
+
+    /**
+     * Allocate random questions from the given category for a game between known players, avoiding questions any of
+     * them has been dealt before while the category has enough others
+     * @param category the category to allocate questions from
+     * @param players the usernames of the players
+     * @return the questions
+     */
+    Mono<List<Question>> allocateQuestions(String category, Collection<String> players);
+
+    /**
+     * Allocate random questions from the given category following a difficulty profile, e.g. easy to hard
+     * @param category the category to allocate questions from
+     * @param profile the difficulty of the rounds, stretched over the rounds of a game
+     * @return the questions
+     */
+    Mono<List<Question>> allocateQuestionsByDifficulty(String category, List<Difficulty> profile);
 }
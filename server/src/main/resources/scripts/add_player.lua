@@ -0,0 +1,37 @@
+-- Add a player to a game that has not started yet, and rank the game by players in the pending games. Players are
+-- numbered from 0 in the order they join, and never leave, so the ordinals are dense.
+-- KEYS[1] game key, KEYS[2] players by username, KEYS[3] pending games
+-- ARGV[1] game id, ARGV[2] username
+-- Returns the number of players followed by the question id of each round, so they can be added to the player's
+-- seen questions. 0 players if the player already joined, still followed by the question ids so a join that failed to
+-- write them can be retried. {-1} if the game is missing or started.
+if redis.call('HGET', KEYS[1], STATE) ~= STATE_PENDING or redis.call('HEXISTS', KEYS[1], ROUND) == 1 then
+    return {-1}
+end
+local players = 0
+if redis.call('HEXISTS', KEYS[2], ARGV[2]) == 0 then
+    players = redis.call('HLEN', KEYS[2])
+    redis.call('HSET', KEYS[2], ARGV[2], players)
+    players = players + 1
+    -- players expire with the game unless it starts
+    local ttl = redis.call('PTTL', KEYS[1])
+    if ttl > 0 then
+        redis.call('PEXPIRE', KEYS[2], ttl)
+    end
+    redis.call('ZADD', KEYS[3], players, ARGV[1])
+end
+
+local result = {players}
+local rounds = tonumber(redis.call('HGET', KEYS[1], TOTAL_ROUNDS) or '0')
+if rounds > 0 then
+    local fields = {}
+    for round = 0, rounds - 1 do
+        fields[#fields + 1] = ROUND_FIELD_PREFIX .. round .. QUESTION_FIELD_SUFFIX
+    end
+    for _, id in ipairs(redis.call('HMGET', KEYS[1], unpack(fields))) do
+        if id then
+            result[#result + 1] = id
+        end
+    end
+end
+return result
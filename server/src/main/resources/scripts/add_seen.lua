@@ -0,0 +1,17 @@
+-- Add questions to a player's Bloom filter of seen questions, with the same offsets as SeenQuestions.
+-- KEYS[1] questions seen by the player
+-- ARGV[1] time to live of the seen questions (ms), ARGV[2..n] question ids
+local bits = tonumber(SEEN_BITS)
+for i = 2, #ARGV do
+    local id = ARGV[i]
+    local h1 = tonumber(string.sub(id, 1, 8), 16)
+    local h2 = tonumber(string.sub(id, 9, 16), 16)
+    if h2 % 2 == 0 then
+        h2 = h2 + 1
+    end
+    for k = 0, tonumber(SEEN_HASHES) - 1 do
+        redis.call('SETBIT', KEYS[1], (h1 + k * h2) % bits, 1)
+    end
+end
+redis.call('PEXPIRE', KEYS[1], ARGV[1])
+return #ARGV - 1
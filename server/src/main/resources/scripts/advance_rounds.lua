@@ -0,0 +1,49 @@
+-- Start or complete every round in a shard's delayed rounds queue that is due. Completing the last round finishes the
+-- game, and all of its keys expire.
+-- KEYS[1] delayed rounds queue
+-- ARGV[1] now (epoch ms), ARGV[2] delay before a round starts (ms), ARGV[3] round duration (ms), ARGV[4] batch size,
+-- ARGV[5] time to live of a finished game (ms), ARGV[6] hash tag of the shard's keys
+-- Returns when the next round left in the queue is due (epoch ms, -1 if none), followed by the round events that
+-- were published.
+local queue = KEYS[1]
+local now = tonumber(ARGV[1])
+local startDelay = tonumber(ARGV[2])
+local roundDuration = tonumber(ARGV[3])
+local tag = ARGV[6]
+
+local due = redis.call('ZRANGEBYSCORE', queue, '-inf', now, 'LIMIT', 0, tonumber(ARGV[4]))
+for _, member in ipairs(due) do
+    local event = decodeEvent(member)
+    local gameKey = GAME_KEY_PREFIX .. tag .. event.gameId
+    if event.started then
+        -- players that are still in the game
+        local players = redis.call('HLEN', PLAYERS_KEY_PREFIX .. tag .. event.gameId)
+            - redis.call('BITCOUNT', ELIMINATED_KEY_PREFIX .. tag .. event.gameId)
+        local field = ROUND_FIELD_PREFIX .. event.round
+        redis.call('HSET', gameKey, ROUND, event.round, field .. PLAYERS_FIELD_SUFFIX, players,
+            field .. OPENS_FIELD_SUFFIX, now, field .. CLOSES_FIELD_SUFFIX, now + roundDuration)
+        local completed = encodeEvent(event.gameId, event.round, false)
+        redis.call('ZADD', queue, now + roundDuration, completed)
+    else
+        redis.call('PEXPIRE', ANSWERED_KEY_PREFIX .. tag .. event.gameId .. ':' .. event.round, ARGV[5])
+        local total = tonumber(redis.call('HGET', gameKey, TOTAL_ROUNDS) or '0')
+        if event.round + 1 < total then
+            local nextRound = encodeEvent(event.gameId, event.round + 1, true)
+            redis.call('ZADD', queue, now + startDelay, nextRound)
+        else
+            redis.call('HSET', gameKey, STATE, STATE_FINISHED)
+            redis.call('PEXPIRE', gameKey, ARGV[5])
+            redis.call('PEXPIRE', PLAYERS_KEY_PREFIX .. tag .. event.gameId, ARGV[5])
+            redis.call('PEXPIRE', ANSWERS_KEY_PREFIX .. tag .. event.gameId, ARGV[5])
+            redis.call('PEXPIRE', ELIMINATED_KEY_PREFIX .. tag .. event.gameId, ARGV[5])
+        end
+    end
+    redis.call('ZREM', queue, member)
+    redis.call('PUBLISH', ROUNDS_CHANNEL_KEY, member)
+end
+local next = redis.call('ZRANGE', queue, 0, 0, 'WITHSCORES')
+local result = {tonumber(next[2] or '-1')}
+for _, member in ipairs(due) do
+    result[#result + 1] = member
+end
+return result
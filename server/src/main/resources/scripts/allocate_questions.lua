@@ -0,0 +1,42 @@
+-- Allocate questions from a category for a new game, without replacement. The sample is taken from the questions
+-- allocated longest ago, weighted by how long ago, and the sampled questions are rescored with the current time so
+-- the next allocation moves on to others. Questions are sampled from the whole category, or from the indexes of
+-- its difficulties, and rescored in all of them. A sample to choose from is not rescored, only what is chosen is.
+-- KEYS[1] category questions, KEYS[2..] category questions of each difficulty
+-- ARGV[1] now (epoch ms), ARGV[2] candidates per question, ARGV[3] random seed, ARGV[4] 1 to rescore, 0 to only sample
+-- ARGV[5..] number of questions to sample from each of KEYS
+-- Returns the ids of the questions, in the order of KEYS. The questions are read separately, they are not in the
+-- category's slot.
+local now = tonumber(ARGV[1])
+local candidatesPer = tonumber(ARGV[2])
+local rescore = ARGV[4] == '1'
+math.randomseed(tonumber(ARGV[3]))
+
+local allocated = {}
+for k = 1, #KEYS do
+    local n = tonumber(ARGV[k + 4])
+    if n > 0 then
+        local candidates = redis.call('ZRANGE', KEYS[k], 0, n * candidatesPer - 1, 'WITHSCORES')
+        -- weighted sampling (Efraimidis-Spirakis), keep the n largest log(random) / weight
+        local sampled = {}
+        for i = 1, #candidates, 2 do
+            local age = math.max(now - tonumber(candidates[i + 1]), 1)
+            sampled[#sampled + 1] = {id = candidates[i], key = math.log(math.random()) / age}
+        end
+        table.sort(sampled, function(a, b) return a.key > b.key end)
+
+        local rescored = {}
+        for i = 1, math.min(n, #sampled) do
+            rescored[#rescored + 1] = ARGV[1]
+            rescored[#rescored + 1] = sampled[i].id
+            allocated[#allocated + 1] = sampled[i].id
+        end
+        if rescore and #rescored > 0 then
+            -- a question is only in the index of its own difficulty, XX leaves the others alone
+            for j = 1, #KEYS do
+                redis.call('ZADD', KEYS[j], 'XX', unpack(rescored))
+            end
+        end
+    end
+end
+return allocated
@@ -0,0 +1,20 @@
+-- Round event encoding, shared by the scripts that queue rounds. Mirrors trivia.repository.CompactCodec.
+-- Events are read in either format and written in EVENT_FORMAT.
+local function decodeEvent(member)
+    if string.sub(member, 1, 1) == 'E' then
+        local colon = string.find(member, ':', 3, true)
+        return {
+            started = string.sub(member, 2, 2) == '1',
+            round = tonumber(string.sub(member, 3, colon - 1)),
+            gameId = string.sub(member, colon + 1)
+        }
+    end
+    return cjson.decode(member)
+end
+
+local function encodeEvent(gameId, round, started)
+    if EVENT_FORMAT == 'compact' then
+        return 'E' .. (started and '1' or '0') .. round .. ':' .. gameId
+    end
+    return cjson.encode({ gameId = gameId, round = round, started = started })
+end
@@ -0,0 +1,13 @@
+-- Recount a category from its sorted sets, for the categories whose questions were stored before they were counted.
+-- KEYS[1] category questions, KEYS[2] category counts, KEYS[3..n] category questions of each difficulty
+-- ARGV[1..] the difficulties, in the order of KEYS[3..n]
+-- Returns the number of questions in the category.
+local total = redis.call('ZCARD', KEYS[1])
+redis.call('HSET', KEYS[2], TOTAL, total)
+for i = 3, #KEYS do
+    local n = redis.call('ZCARD', KEYS[i])
+    if n > 0 then
+        redis.call('HSET', KEYS[2], ARGV[i - 2], n)
+    end
+end
+return total
@@ -0,0 +1,18 @@
+-- Create a game and all of its rounds in the game hash. Rounds reference their question by id, the questions are
+-- stored already.
+-- KEYS[1] game key
+-- ARGV[1] game id, ARGV[2] title, ARGV[3] time to live until the game starts (ms),
+-- ARGV[4..n] question id of each round
+-- Returns 1 if the game was created, 0 if the id is already taken.
+local gameKey = KEYS[1]
+if redis.call('EXISTS', gameKey) == 1 then
+    return 0
+end
+local rounds = #ARGV - 3
+redis.call('HSET', gameKey, TITLE, ARGV[2], TOTAL_ROUNDS, rounds, STATE, STATE_PENDING)
+for round = 0, rounds - 1 do
+    redis.call('HSET', gameKey, ROUND_FIELD_PREFIX .. round .. QUESTION_FIELD_SUFFIX, ARGV[4 + round])
+end
+-- a game that never gets enough players expires
+redis.call('PEXPIRE', gameKey, ARGV[3])
+return 1
@@ -0,0 +1,17 @@
+-- Find a player of a game, with what is needed to check their answers on another node.
+-- KEYS[1] game key, KEYS[2] players by username, KEYS[3] eliminated players
+-- ARGV[1] game id, ARGV[2] username, ARGV[3] hash tag of the game's keys
+-- Returns {ordinal, 1 if eliminated, current round, 1 if answered the current round}, the round is -1 if the game
+-- has not started. Empty if the player is not in the game.
+local ordinal = redis.call('HGET', KEYS[2], ARGV[2])
+if not ordinal then
+    return {}
+end
+ordinal = tonumber(ordinal)
+local eliminated = redis.call('GETBIT', KEYS[3], ordinal)
+local round = redis.call('HGET', KEYS[1], ROUND)
+if not round then
+    return {ordinal, eliminated, -1, 0}
+end
+local answered = redis.call('GETBIT', ANSWERED_KEY_PREFIX .. ARGV[3] .. ARGV[1] .. ':' .. round, ordinal)
+return {ordinal, eliminated, tonumber(round), answered}
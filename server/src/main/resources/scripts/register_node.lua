@@ -0,0 +1,7 @@
+-- Register a scheduler node until its heartbeat expires, and forget the nodes whose heartbeat expired.
+-- KEYS[1] scheduler nodes
+-- ARGV[1] node id, ARGV[2] now, ARGV[3] when the heartbeat expires
+-- Returns the number of live nodes, this one included.
+redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', '(' .. ARGV[2])
+redis.call('ZADD', KEYS[1], ARGV[3], ARGV[1])
+return redis.call('ZCARD', KEYS[1])
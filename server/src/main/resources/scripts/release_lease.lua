@@ -0,0 +1,8 @@
+-- Give back a shard's lease, if the node still holds it.
+-- KEYS[1] lease
+-- ARGV[1] node id
+-- Returns 1 if the lease was released.
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
@@ -0,0 +1,20 @@
+-- Replay an answer count from a node's write journal, at most once. Journal entries are numbered in order, and the
+-- answers of a game keep the number of the last entry replayed from each node, so an entry replayed again is skipped.
+-- A count is dropped if the game's keys are gone, and gets the game's time to live if the game finished.
+-- KEYS[1] answers of the game, KEYS[2] game key
+-- ARGV[1] field of the node's last replayed entry, ARGV[2] entry number, ARGV[3] answer field, ARGV[4] count
+-- Returns 1 if the count was added, 0 if it was replayed before or the game is gone.
+local ttl = redis.call('PTTL', KEYS[2])
+if ttl == -2 then
+    return 0
+end
+local replayed = tonumber(redis.call('HGET', KEYS[1], ARGV[1]) or '0')
+if tonumber(ARGV[2]) <= replayed then
+    return 0
+end
+redis.call('HINCRBY', KEYS[1], ARGV[3], ARGV[4])
+redis.call('HSET', KEYS[1], ARGV[1], ARGV[2])
+if ttl > 0 and redis.call('PTTL', KEYS[1]) == -1 then
+    redis.call('PEXPIRE', KEYS[1], ttl)
+end
+return 1
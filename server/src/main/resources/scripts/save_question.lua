@@ -0,0 +1,17 @@
+-- Add a stored question to its category and its category's difficulty, and count them. The counts are the sizes of
+-- the category's sorted sets, so saving a question again recounts a category whose questions were stored before they
+-- were counted, and indexes a question stored before its category was indexed by difficulty. The keys of a category
+-- share a hash tag, the question itself and the category registry are written separately.
+-- KEYS[1] category questions, KEYS[2] category counts, KEYS[3] category questions of the difficulty
+-- ARGV[1] difficulty, ARGV[2] question id
+-- Returns 1 if the question was added, 0 if it already existed.
+local added = redis.call('ZADD', KEYS[1], 'NX', 1, ARGV[2])
+if ARGV[1] ~= '' then
+    -- with the score it already has in the category, if it was allocated before
+    redis.call('ZADD', KEYS[3], 'NX', redis.call('ZSCORE', KEYS[1], ARGV[2]), ARGV[2])
+end
+redis.call('HSET', KEYS[2], TOTAL, redis.call('ZCARD', KEYS[1]))
+if ARGV[1] ~= '' then
+    redis.call('HSET', KEYS[2], ARGV[1], redis.call('ZCARD', KEYS[3]))
+end
+return added
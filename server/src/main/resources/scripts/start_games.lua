@@ -0,0 +1,21 @@
+-- Start every pending game of a shard that has enough players by queueing its first round.
+-- KEYS[1] pending games, KEYS[2] delayed rounds queue
+-- ARGV[1] minimum players, ARGV[2] time the first round starts (epoch ms), ARGV[3] batch size,
+-- ARGV[4] hash tag of the shard's keys
+-- Returns the ids of the started games.
+local pending = redis.call('ZRANGEBYSCORE', KEYS[1], ARGV[1], '+inf', 'LIMIT', 0, tonumber(ARGV[3]))
+local started = {}
+for _, gameId in ipairs(pending) do
+    redis.call('ZREM', KEYS[1], gameId)
+    local gameKey = GAME_KEY_PREFIX .. ARGV[4] .. gameId
+    -- skip games that expired while pending
+    if redis.call('HGET', gameKey, STATE) == STATE_PENDING then
+        redis.call('HSET', gameKey, STATE, STATE_STARTED)
+        redis.call('PERSIST', gameKey)
+        redis.call('PERSIST', PLAYERS_KEY_PREFIX .. ARGV[4] .. gameId)
+        redis.call('ZADD', KEYS[2], ARGV[2], encodeEvent(gameId, 0, true))
+        redis.call('PUBLISH', GAME_CHANNEL_KEY, gameId)
+        started[#started + 1] = gameId
+    end
+end
+return started
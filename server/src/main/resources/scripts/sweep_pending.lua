@@ -0,0 +1,14 @@
+-- Remove games that expired before they started from the pending games of a shard, a slice at a time.
+-- KEYS[1] pending games
+-- ARGV[1] scan cursor, ARGV[2] scan count, ARGV[3] hash tag of the shard's keys
+-- Returns the next cursor, 0 when the scan is complete, and the number of games removed.
+local scan = redis.call('ZSCAN', KEYS[1], ARGV[1], 'COUNT', tonumber(ARGV[2]))
+local members = scan[2]
+local removed = 0
+-- members and scores alternate
+for i = 1, #members, 2 do
+    if redis.call('EXISTS', GAME_KEY_PREFIX .. ARGV[3] .. members[i]) == 0 then
+        removed = removed + redis.call('ZREM', KEYS[1], members[i])
+    end
+end
+return { scan[1], removed }
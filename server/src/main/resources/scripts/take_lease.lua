@@ -0,0 +1,14 @@
+-- Take a shard's lease if it is free, or renew it if the node already holds it.
+-- KEYS[1] lease
+-- ARGV[1] node id, ARGV[2] lease duration in milliseconds
+-- Returns 1 if the node holds the lease, 0 if another node does.
+local owner = redis.call('GET', KEYS[1])
+if owner == ARGV[1] then
+    redis.call('PEXPIRE', KEYS[1], ARGV[2])
+    return 1
+end
+if not owner then
+    redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])
+    return 1
+end
+return 0
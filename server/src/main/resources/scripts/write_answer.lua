@@ -0,0 +1,14 @@
+-- Add an answer count written behind, unless the game's keys are gone. Counts written after the game finished get the
+-- game's time to live, so they don't outlive it.
+-- KEYS[1] game key, KEYS[2] answers of the game
+-- ARGV[1] answer field, ARGV[2] count
+-- Returns the new count, -1 if the game is gone.
+local ttl = redis.call('PTTL', KEYS[1])
+if ttl == -2 then
+    return -1
+end
+local count = redis.call('HINCRBY', KEYS[2], ARGV[1], ARGV[2])
+if ttl > 0 and redis.call('PTTL', KEYS[2]) == -1 then
+    redis.call('PEXPIRE', KEYS[2], ttl)
+end
+return count
@@ -0,0 +1,24 @@
+-- Set a player's bit written behind, unless the game's keys are gone. A bit written after its key was expired gets a
+-- time to live again, so it doesn't outlive the game.
+-- KEYS[1] game key, KEYS[2] bitmap
+-- ARGV[1] offset, ARGV[2] field of when the bitmap's round closes, empty if it lasts as long as the game,
+-- ARGV[3] now (epoch ms), ARGV[4] time to live of a finished round (ms)
+-- Returns the previous bit, -1 if the game is gone.
+local ttl = redis.call('PTTL', KEYS[1])
+if ttl == -2 then
+    return -1
+end
+local previous = redis.call('SETBIT', KEYS[2], ARGV[1], 1)
+if redis.call('PTTL', KEYS[2]) == -1 then
+    if ARGV[2] ~= '' then
+        local closes = redis.call('HGET', KEYS[1], ARGV[2])
+        if closes and tonumber(ARGV[3]) >= tonumber(closes) then
+            ttl = tonumber(ARGV[4])
+        end
+    end
+    -- the game's own time to live once it is finished
+    if ttl > 0 then
+        redis.call('PEXPIRE', KEYS[2], ttl)
+    end
+end
+return previous
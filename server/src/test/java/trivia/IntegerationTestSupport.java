@@ -19,8 +19,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 public abstract class IntegerationTestSupport implements TestPropertyProvider {
 
     @Container
-    public GenericContainer<?> redis = new GenericContainer<>("redis:5.0.3-alpine")
-        .withExposedPorts(6379);
+    public GenericContainer<?> redis = redisContainer();
 
     @Inject
     protected StatefulRedisConnection<String,String> connection;
@@ -31,6 +30,18 @@ public abstract class IntegerationTestSupport implements TestPropertyProvider {
     @Nonnull
     @Override
     public Map<String, String> getProperties() {
+        return redisProperties(redis);
+    }
+
+    /**
+     * For specs that can't extend this class
+     */
+    public static GenericContainer<?> redisContainer() {
+        return new GenericContainer<>("redis:6.0.9-alpine")
+            .withExposedPorts(6379);
+    }
+
+    public static Map<String, String> redisProperties(GenericContainer<?> redis) {
         // get container ports after start
         redis.start();
         assertThat(redis.isRunning()).isTrue();
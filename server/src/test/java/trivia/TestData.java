@@ -4,6 +4,7 @@ import lombok.SneakyThrows;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import trivia.domain.Difficulty;
+import trivia.domain.AnswerOptions;
 import trivia.domain.Game;
 import trivia.domain.Question;
 import trivia.domain.Round;
@@ -20,9 +21,13 @@ public class TestData {
     public static final String MATH_CATEGORY = "Math";
 
     public static Question createMathQuestion(int n) {
+        return createMathQuestion(n, Difficulty.easy);
+    }
+
+    public static Question createMathQuestion(int n, Difficulty difficulty) {
         return Question.builder()
             .category(MATH_CATEGORY)
-            .difficulty(Difficulty.easy)
+            .difficulty(difficulty)
             .text(String.format("What is %d + %d?", n, n))
             .correctAnswer(String.valueOf(n+n))
             .incorrectAnswers(List.of(String.valueOf(n+1),String.valueOf(n * n + 1),"Donkey"))
@@ -44,9 +49,11 @@ public class TestData {
     }
 
     public static Round createRound(int roundNumber) {
+        Question question = TestData.createMathQuestion(3);
         return Round.builder()
             .number(roundNumber)
-            .question(TestData.createMathQuestion(3))
+            .question(question)
+            .options(AnswerOptions.of(question, "1", roundNumber))
             .players(3)
             .build();
     }
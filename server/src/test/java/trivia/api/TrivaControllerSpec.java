@@ -2,6 +2,7 @@ package trivia.api;
 
 import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.ReadContext;
+import io.micronaut.http.HttpHeaders;
 import io.micronaut.http.HttpRequest;
 import io.micronaut.http.MediaType;
 import io.micronaut.http.client.HttpClient;
@@ -14,6 +15,7 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import trivia.TestData;
 import trivia.domain.Game;
+import trivia.repository.RepositoryUnavailableException;
 import trivia.service.DefaultQuestionService;
 import trivia.service.GameService;
 import trivia.service.QuestionService;
@@ -21,6 +23,7 @@ import trivia.service.DefaultGameService;
 
 import javax.inject.Inject;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
@@ -68,6 +71,42 @@ public class TrivaControllerSpec {
         assertThat(categories).containsExactly(cats);
     }
 
+    @Test
+    void get_categories_not_modified() {
+        when(questionService.listCategories()).thenReturn(Flux.just("Math", "Science"));
+
+        var response = client.toBlocking().exchange(HttpRequest.GET("/categories"), String.class);
+        assertThat(response.getStatus().getCode()).isEqualTo(200);
+        assertThat(response.getHeaders().get(HttpHeaders.CACHE_CONTROL)).contains("max-age");
+        String etag = response.getHeaders().get(HttpHeaders.ETAG);
+        assertThat(etag).isNotBlank();
+
+        // same categories, nothing to send
+        response = client.toBlocking().exchange(HttpRequest.GET("/categories").header(HttpHeaders.IF_NONE_MATCH, etag), String.class);
+        assertThat(response.getStatus().getCode()).isEqualTo(304);
+        // also when it is one of several tags, or weak
+        response = client.toBlocking().exchange(HttpRequest.GET("/categories")
+            .header(HttpHeaders.IF_NONE_MATCH, "\"other\", W/" + etag), String.class);
+        assertThat(response.getStatus().getCode()).isEqualTo(304);
+
+        // changed categories
+        when(questionService.listCategories()).thenReturn(Flux.just("Math", "Science", "Sports"));
+        response = client.toBlocking().exchange(HttpRequest.GET("/categories").header(HttpHeaders.IF_NONE_MATCH, etag), String.class);
+        assertThat(response.getStatus().getCode()).isEqualTo(200);
+        assertThat(response.getHeaders().get(HttpHeaders.ETAG)).isNotEqualTo(etag);
+    }
+
+    @Test
+    void matchesETag() {
+        String etag = "\"1a2b\"";
+        assertThat(TriviaController.matchesETag(etag, etag)).isTrue();
+        assertThat(TriviaController.matchesETag("W/" + etag, etag)).isTrue();
+        assertThat(TriviaController.matchesETag("\"other\",  " + etag, etag)).isTrue();
+        assertThat(TriviaController.matchesETag("*", etag)).isTrue();
+        assertThat(TriviaController.matchesETag("\"other\", W/\"1a2\"", etag)).isFalse();
+        assertThat(TriviaController.matchesETag(null, etag)).isFalse();
+    }
+
     @Test
     void post_create_game() {
         String category = "Math";
@@ -106,4 +145,27 @@ public class TrivaControllerSpec {
 
         verify(gameService, never()).createGame(any(String.class), anyList());
     }
+
+    @Test
+    void get_round_stats() {
+        when(gameService.findStats("100", 2)).thenReturn(Mono.just(Map.of("4", 10, "Donkey", 2)));
+
+        var response = client.toBlocking().exchange(HttpRequest.GET("/games/100/rounds/2/stats"), String.class);
+        assertThat(response.getStatus().getCode()).isEqualTo(200);
+        assertThat(response.getHeaders().get(HttpHeaders.CACHE_CONTROL)).isEqualTo(TriviaController.STATS_CACHE_CONTROL);
+
+        ReadContext ctx = JsonPath.parse(response.body());
+        assertThat(ctx.<Integer>read("$.4")).isEqualTo(10);
+        assertThat(ctx.<Integer>read("$.Donkey")).isEqualTo(2);
+    }
+
+    @Test
+    void get_round_stats_unavailable() {
+        when(gameService.findStats("101", 2)).thenReturn(Mono.error(new RepositoryUnavailableException("open", Duration.ofSeconds(5))));
+
+        var e = assertThrows(HttpClientResponseException.class,
+            () -> client.toBlocking().exchange(HttpRequest.GET("/games/101/rounds/2/stats"), String.class));
+        assertThat(e.getStatus().getCode()).isEqualTo(503);
+        assertThat(e.getResponse().getHeaders().get(HttpHeaders.RETRY_AFTER)).isEqualTo("5");
+    }
 }
@@ -13,12 +13,11 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import trivia.TestData;
 import trivia.domain.Game;
-import trivia.domain.Question;
+import trivia.domain.Round;
 import trivia.service.GameService;
 
 import javax.inject.Inject;
 import java.time.Duration;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -96,12 +95,14 @@ public class WebSocketGameHandlerSpec {
         when(gameService.findRound(eq(gameId), eq(0))).thenReturn(Mono.just(round));
 
         //  when Alice answers a question it will be incorrect
-        when(gameService.answerQuestion(eq(gameId), any(String.class))).thenReturn(Mono.just(false));
+        int incorrect = (round.getOptions().getCorrectIndex() + 1) % round.getOptions().size();
+        when(gameService.findPlayer(gameId, userName)).thenReturn(Mono.just(0));
+        when(gameService.answerQuestion(gameId, 0, incorrect)).thenReturn(Mono.just(false));
 
-        broadcastQuestion(gameClient, round.getQuestion());
+        broadcastQuestion(gameClient, round);
 
-        // Alice sends back incorrect answer, gets back a player_eliminated
-        gameClient.send(round.getQuestion().getIncorrectAnswers().get(1));
+        // Alice sends back the index of an incorrect answer, gets back a player_eliminated
+        gameClient.send(String.valueOf(incorrect));
         awaitReceivedMessages(gameClient, 1);
         var msg = gameClient.getReceived().poll();
         ReadContext ctx = JsonPath.parse(msg);
@@ -120,13 +121,15 @@ public class WebSocketGameHandlerSpec {
         when(gameService.findRound(eq(gameId), eq(0))).thenReturn(Mono.just(round));
 
         //  when Alice answers a question it will be correct
-        when(gameService.answerQuestion(eq(gameId), any(String.class))).thenReturn(Mono.just(true));
+        int correct = round.getOptions().getCorrectIndex();
+        when(gameService.findPlayer(gameId, userName)).thenReturn(Mono.just(0));
+        when(gameService.answerQuestion(gameId, 0, correct)).thenReturn(Mono.just(true));
 
         // round started
-        broadcastQuestion(gameClient, round.getQuestion());
+        broadcastQuestion(gameClient, round);
 
-        // Alice sends back correct answer, gets back a player_advanced
-        gameClient.send(round.getQuestion().getCorrectAnswer());
+        // Alice sends back the index of the correct answer, gets back a player_advanced
+        gameClient.send(String.valueOf(correct));
         awaitReceivedMessages(gameClient, 1);
         var msg = gameClient.getReceived().poll();
         ReadContext ctx = JsonPath.parse(msg);
@@ -149,7 +152,7 @@ public class WebSocketGameHandlerSpec {
             round.getQuestion().getIncorrectAnswers().get(1), 1);
         when(gameService.findStats(eq(gameId), eq(round.getNumber()))).thenReturn(Mono.just(stats));
 
-        gameHandler.broadcastRoundCompleted(gameId, round.getNumber());
+        gameHandler.broadcastRoundCompleted(gameId, round.getNumber()).block();
 
         // round over, stats given
         awaitReceivedMessages(gameClient, 1);
@@ -158,6 +161,7 @@ public class WebSocketGameHandlerSpec {
         assertThat(ctx.<String>read("$.@type")).isEqualTo("round_completed");
         assertThat(ctx.<Integer>read("$.round")).isEqualTo(round.getNumber());
         assertThat(ctx.<String>read("$.answer")).isEqualTo(round.getQuestion().getCorrectAnswer());
+        assertThat(ctx.<Integer>read("$.answerIndex")).isEqualTo(round.getOptions().getCorrectIndex());
         assertThat(ctx.<Map<String,Integer>>read("$.stats")).containsOnly(
             entry(round.getQuestion().getCorrectAnswer(), 2),
             entry(round.getQuestion().getIncorrectAnswers().get(0), 0),
@@ -180,20 +184,27 @@ public class WebSocketGameHandlerSpec {
         return gameClient;
     }
 
-    private Question broadcastQuestion(GameTestClient gameClient, Question question) {
+    private void broadcastQuestion(GameTestClient gameClient, Round round) {
         // simulate first round started
-        gameHandler.broadcastRoundStarted(gameId, 0);
+        gameHandler.broadcastRoundStarted(gameId, 0).block();
         awaitReceivedMessages(gameClient, 1);
         String msg = gameClient.getReceived().poll();
         ReadContext ctx = JsonPath.parse(msg);
         assertThat(ctx.<String>read("$.@type")).isEqualTo("round_started");
         assertThat(ctx.<Integer>read("$.round")).isEqualTo(0);
-        assertThat(ctx.<String>read("$.question")).isEqualTo(question.getText());
+        assertThat(ctx.<String>read("$.question")).isEqualTo(round.getQuestion().getText());
+        // in option order, so answers are sent as an index
+        assertThat(ctx.<List<String>>read("$.answers")).isEqualTo(round.getOptions().getAnswers());
+    }
 
-        var answers = new ArrayList<>(question.getIncorrectAnswers());
-        answers.add(question.getCorrectAnswer());
-        assertThat(ctx.<List<String>>read("$.answers")).containsOnly(answers.toArray(new String[0]));
-        return question;
+    @Test
+    public void parseAnswer() {
+        assertThat(WebSocketGameHandler.parseAnswer("2")).isEqualTo(2);
+        assertThat(WebSocketGameHandler.parseAnswer(" 11\n")).isEqualTo(11);
+        assertThat(WebSocketGameHandler.parseAnswer("")).isEqualTo(-1);
+        assertThat(WebSocketGameHandler.parseAnswer("-1")).isEqualTo(-1);
+        assertThat(WebSocketGameHandler.parseAnswer("Donkey")).isEqualTo(-1);
+        assertThat(WebSocketGameHandler.parseAnswer("99999999999")).isEqualTo(-1);
     }
 
     private void awaitReceivedMessages(GameTestClient gameTestClient, int expected) {
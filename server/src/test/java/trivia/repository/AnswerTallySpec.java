@@ -0,0 +1,101 @@
+package trivia.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class AnswerTallySpec {
+
+    AnswerTally underTest = new AnswerTally();
+
+    @Test
+    void drain() throws Exception {
+        underTest.increment("1", 0, 0);
+        underTest.increment("1", 0, 0);
+        underTest.increment("1", 0, 1);
+
+        assertThat(underTest.drain()).extracting(d -> d.getKey().getOption(), AnswerTally.Delta::getCount)
+            .containsExactlyInAnyOrder(
+                tuple(0, 2L),
+                tuple(1, 1L));
+        // nothing new to write
+        assertThat(underTest.drain()).isEmpty();
+
+        underTest.increment("1", 0, 0);
+        List<AnswerTally.Delta> deltas = underTest.drain();
+        assertThat(deltas).extracting(AnswerTally.Delta::getCount).containsExactly(1L);
+
+        // a failed write is drained again
+        underTest.restore(deltas.get(0));
+        assertThat(underTest.drain()).extracting(AnswerTally.Delta::getCount).containsExactly(1L);
+    }
+
+    @Test
+    void drainRound() throws Exception {
+        underTest.increment("1", 0, 0);
+        underTest.increment("1", 1, 0);
+        underTest.increment("2", 0, 0);
+
+        assertThat(underTest.drain("1", 0)).extracting(AnswerTally.Delta::getKey)
+            .containsExactly(new AnswerTally.Key("1", 0, 0));
+        // counters are kept per round
+        assertThat(underTest.size()).isEqualTo(3);
+
+        // closing stops counting the round
+        underTest.increment("1", 0, 0);
+        assertThat(underTest.close("1", 0)).extracting(AnswerTally.Delta::getCount).containsExactly(1L);
+        assertThat(underTest.size()).isEqualTo(2);
+
+        // late answers are dropped instead of counting the round again
+        underTest.increment("1", 0, 0);
+        assertThat(underTest.size()).isEqualTo(2);
+        assertThat(underTest.drain("1", 0)).isEmpty();
+    }
+
+    @Test
+    void restoreClosedRound() throws Exception {
+        underTest.increment("1", 0, 0);
+        List<AnswerTally.Delta> deltas = underTest.close("1", 0);
+
+        // a failed write of a closed round is drained once more, then forgotten
+        underTest.restore(deltas.get(0));
+        assertThat(underTest.drain()).extracting(AnswerTally.Delta::getCount).containsExactly(1L);
+        assertThat(underTest.size()).isZero();
+        assertThat(underTest.drain()).isEmpty();
+    }
+
+    @Test
+    void optionOutOfRange() throws Exception {
+        assertThatThrownBy(() -> underTest.increment("1", 0, AnswerTally.MAX_OPTIONS))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> underTest.increment("1", 0, -1))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void concurrentIncrementsAreNotLost() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 4; i++) {
+            executor.execute(() -> {
+                for (int n = 0; n < 10_000; n++) {
+                    underTest.increment("1", 0, 0);
+                }
+            });
+        }
+        long total = 0;
+        while (!executor.isTerminated()) {
+            executor.shutdown();
+            total += underTest.drain().stream().mapToLong(AnswerTally.Delta::getCount).sum();
+            executor.awaitTermination(1, TimeUnit.MILLISECONDS);
+        }
+        total += underTest.drain().stream().mapToLong(AnswerTally.Delta::getCount).sum();
+        assertThat(total).isEqualTo(40_000);
+    }
+}
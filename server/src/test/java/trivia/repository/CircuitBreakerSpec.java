@@ -0,0 +1,67 @@
+package trivia.repository;
+
+import io.lettuce.core.RedisCommandExecutionException;
+import io.lettuce.core.RedisConnectionException;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CircuitBreakerSpec {
+
+    @Test
+    void opensAfterFailuresInARow() {
+        var circuit = new CircuitBreaker("test", 3, Duration.ofHours(1));
+        Mono<String> failing = Mono.error(new RedisConnectionException("down"));
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> circuit.protect(failing).block()).isInstanceOf(RedisConnectionException.class);
+        }
+        // a success starts the count again
+        assertThat(circuit.protect(Mono.just("ok")).block()).isEqualTo("ok");
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> circuit.protect(failing).block()).isInstanceOf(RedisConnectionException.class);
+        }
+        assertThat(circuit.getState()).isEqualTo(CircuitBreaker.State.closed);
+
+        assertThatThrownBy(() -> circuit.protect(failing).block()).isInstanceOf(RedisConnectionException.class);
+        assertThat(circuit.getState()).isEqualTo(CircuitBreaker.State.open);
+
+        // fails straight away without trying
+        assertThatThrownBy(() -> circuit.protect(Mono.just("ok")).block()).isInstanceOf(RepositoryUnavailableException.class);
+        assertThatThrownBy(() -> circuit.call(() -> "ok")).isInstanceOf(RepositoryUnavailableException.class);
+    }
+
+    @Test
+    void triesAgainAfterOpenDuration() throws Exception {
+        var circuit = new CircuitBreaker("test", 1, Duration.ofMillis(50));
+        assertThatThrownBy(() -> circuit.call(() -> {
+            throw new RepositoryTimeoutException("op", Duration.ofMillis(1), null);
+        })).isInstanceOf(RepositoryTimeoutException.class);
+        assertThat(circuit.getState()).isEqualTo(CircuitBreaker.State.open);
+
+        // one try after the open duration, its failure opens the circuit again
+        Thread.sleep(60);
+        assertThatThrownBy(() -> circuit.protect(Mono.error(new RedisConnectionException("down"))).block())
+            .isInstanceOf(RedisConnectionException.class);
+        assertThat(circuit.getState()).isEqualTo(CircuitBreaker.State.open);
+
+        // and its success closes it
+        Thread.sleep(60);
+        assertThat(circuit.protect(Mono.just("ok")).block()).isEqualTo("ok");
+        assertThat(circuit.getState()).isEqualTo(CircuitBreaker.State.closed);
+    }
+
+    @Test
+    void onlyFailuresToReachRedisCount() {
+        var circuit = new CircuitBreaker("test", 1, Duration.ofHours(1));
+        assertThatThrownBy(() -> circuit.protect(Mono.error(new RedisCommandExecutionException("ERR script"))).block())
+            .isInstanceOf(RedisCommandExecutionException.class);
+        assertThatThrownBy(() -> circuit.protect(Mono.error(new RepositoryExpection("in use", null))).block())
+            .isInstanceOf(RepositoryExpection.class);
+        assertThat(circuit.getState()).isEqualTo(CircuitBreaker.State.closed);
+    }
+}
@@ -0,0 +1,62 @@
+package trivia.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConcurrentBitSetSpec {
+
+    ConcurrentBitSet underTest = new ConcurrentBitSet();
+
+    @Test
+    void setOnce() throws Exception {
+        assertThat(underTest.get(3)).isFalse();
+        assertThat(underTest.set(3)).isTrue();
+        assertThat(underTest.set(3)).isFalse();
+        assertThat(underTest.get(3)).isTrue();
+
+        // grows as needed
+        assertThat(underTest.set(100_000)).isTrue();
+        assertThat(underTest.get(100_000)).isTrue();
+        assertThat(underTest.get(99_999)).isFalse();
+        assertThat(underTest.cardinality()).isEqualTo(2);
+
+        assertThat(underTest.get(-1)).isFalse();
+        assertThatThrownBy(() -> underTest.set(-1)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    void setAllFromBitmap() throws Exception {
+        // the first bit of a Redis bitmap is the most significant bit of its first byte
+        underTest.setAll(new byte[]{(byte) 0x80, 0, 0x01});
+        assertThat(underTest.get(0)).isTrue();
+        assertThat(underTest.get(23)).isTrue();
+        assertThat(underTest.cardinality()).isEqualTo(2);
+    }
+
+    @Test
+    void concurrentSetsAreNotLost() throws Exception {
+        // each bit is set by exactly one of the threads, while the set grows
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AtomicInteger won = new AtomicInteger();
+        for (int i = 0; i < 4; i++) {
+            executor.execute(() -> {
+                for (int n = 0; n < 50_000; n++) {
+                    if (underTest.set(n)) {
+                        won.incrementAndGet();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(won.get()).isEqualTo(50_000);
+        assertThat(underTest.cardinality()).isEqualTo(50_000);
+    }
+}
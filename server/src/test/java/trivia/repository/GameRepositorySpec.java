@@ -0,0 +1,373 @@
+package trivia.repository;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import trivia.TestData;
+import trivia.domain.AnswerOptions;
+import trivia.domain.Difficulty;
+import trivia.domain.Game;
+import trivia.domain.Question;
+import trivia.domain.RoundEvent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * The behaviour every {@link GameRepository} has, run against each implementation. A repository may be shared by
+ * all the tests of a class, so each test uses categories and players of its own.
+ */
+abstract class GameRepositorySpec<R extends GameRepository> {
+
+    R underTest;
+
+    abstract R createRepository();
+
+    /**
+     * Write whatever the repository writes behind, before reading it back
+     */
+    void flush() {
+    }
+
+    @BeforeEach
+    public void setUpRepository() {
+        underTest = createRepository();
+    }
+
+    @Test
+    void roundTripQuestionData() throws Exception {
+        String category = "Math: Round Trip";
+        for (int i = 1; i < 5; i++) {
+            assertThat(underTest.save(withCategory(category, TestData.createMathQuestion(i))).block()).isEqualTo(1);
+        }
+        // saving again is a no-op
+        assertThat(underTest.save(withCategory(category, TestData.createMathQuestion(1))).block()).isEqualTo(0);
+
+        List<Question> found = underTest.findQuestionsInCategory(category).collectList().block();
+        assertThat(found).hasSize(4).contains(withCategory(category, TestData.createMathQuestion(2)));
+    }
+
+    @Test
+    void saveQuestion_tooManyAnswers() throws Exception {
+        String category = "Math: Too Many Answers";
+        List<String> incorrect = new ArrayList<>();
+        for (int i = 0; i < AnswerOptions.MAX_SIZE; i++) {
+            incorrect.add(String.valueOf(i));
+        }
+        Question question = Question.builder()
+            .category(category)
+            .text("Which number is missing?")
+            .correctAnswer("16")
+            .incorrectAnswers(incorrect)
+            .build();
+
+        assertThatThrownBy(() -> underTest.save(question).block()).isInstanceOf(IllegalArgumentException.class);
+        assertThat(underTest.findQuestionsInCategory(category).collectList().block()).isEmpty();
+    }
+
+    @Test
+    void allocateQuestion() throws Exception {
+        String category = "Math: Allocated";
+        List<Question> questions = createQuestions(category, 10);
+        questions.forEach(q -> underTest.save(q).block());
+
+        // take a look at the top question
+        Question first = underTest.findQuestionsInCategory(category, 0).blockFirst();
+        assertThat(first).isNotNull();
+        String q1 = first.getText();
+
+        // repeat
+        first = underTest.findQuestionsInCategory(category, 0).blockFirst();
+        assertThat(first.getText()).isEqualTo(q1); // same result
+
+        // allocate questions, favouring the ones allocated longest ago
+        List<Question> allocated = underTest.allocateQuestions(category, 2).collectList().block();
+        assertThat(allocated).hasSize(2).doesNotHaveDuplicates();
+        assertThat(questions).containsAll(allocated);
+
+        // allocated questions are pushed to the bottom
+        assertThat(underTest.findQuestionsInCategory(category, 7).collectList().block())
+            .doesNotContainAnyElementsOf(allocated);
+        assertThat(underTest.allocateQuestions(category, 8).collectList().block())
+            .hasSize(8)
+            .doesNotContainAnyElementsOf(allocated);
+
+        assertThat(underTest.allocateQuestions("Unknown", 2).collectList().block()).isEmpty();
+    }
+
+    @Test
+    void sampleQuestions() throws Exception {
+        String category = "Math: Sampled";
+        List<Question> questions = createQuestions(category, 10);
+        questions.forEach(q -> underTest.save(q).block());
+
+        // sampling leaves the questions where they are, only the ones chosen are allocated
+        List<Question> sampled = underTest.sampleQuestions(category, 6).collectList().block();
+        assertThat(sampled).hasSize(6).doesNotHaveDuplicates();
+        List<Question> chosen = sampled.subList(0, 2);
+        underTest.allocateSampled(category, chosen).block();
+        assertThat(underTest.findQuestionsInCategory(category, 7).collectList().block())
+            .doesNotContainAnyElementsOf(chosen)
+            .containsAll(sampled.subList(2, 6));
+    }
+
+    @Test
+    void allocateQuestion_concurrent() throws Exception {
+        String category = "Math: Concurrent";
+        createQuestions(category, 20).forEach(q -> underTest.save(q).block());
+
+        // each allocation is atomic, so concurrent games get different questions while there are enough
+        List<Question> allocated = Flux.range(0, 5)
+            .flatMap(i -> underTest.allocateQuestions(category, 4))
+            .collectList()
+            .block();
+        assertThat(allocated).hasSize(20).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void allocateQuestion_byDifficulty() throws Exception {
+        String category = "Math: Ramped";
+        for (int i = 0; i < 9; i++) {
+            underTest.save(withCategory(category, TestData.createMathQuestion(i, Difficulty.values()[i % 3]))).block();
+        }
+
+        // questions are dealt to the rounds by difficulty
+        var rounds = List.of(Difficulty.easy, Difficulty.easy, Difficulty.medium, Difficulty.hard);
+        List<Question> allocated = underTest.allocateQuestions(category, rounds).collectList().block();
+        assertThat(allocated).hasSize(4).doesNotHaveDuplicates();
+        assertThat(allocated).extracting(Question::getDifficulty).isEqualTo(rounds);
+
+        // and pushed to the bottom of the whole category as well
+        assertThat(underTest.findQuestionsInCategory(category, 4).collectList().block())
+            .doesNotContainAnyElementsOf(allocated);
+
+        // the easy question allocated longest ago comes next
+        assertThat(underTest.allocateQuestions(category, List.of(Difficulty.easy)).collectList().block())
+            .hasSize(1)
+            .doesNotContainAnyElementsOf(allocated);
+    }
+
+    @Test
+    void allocateQuestion_fewerThanRequested() throws Exception {
+        String category = "Math: Too Few";
+        List<Question> questions = createQuestions(category, 3);
+        questions.forEach(q -> underTest.save(q).block());
+        underTest.save(withCategory(category, TestData.createMathQuestion(10, Difficulty.hard))).block();
+
+        // each question is dealt once, the allocation comes up short
+        assertThat(underTest.allocateQuestions(category, 6).collectList().block())
+            .hasSize(4)
+            .doesNotHaveDuplicates();
+
+        // rounds of a difficulty without enough questions are left out
+        var rounds = List.of(Difficulty.hard, Difficulty.hard, Difficulty.hard);
+        assertThat(underTest.allocateQuestions(category, rounds).collectList().block())
+            .hasSize(1)
+            .extracting(Question::getDifficulty)
+            .containsExactly(Difficulty.hard);
+    }
+
+    @Test
+    void listCategories() throws Exception {
+        underTest.save(withCategory("Math: Listed", TestData.createMathQuestion(1))).block();
+        underTest.save(withCategory("Math: Also Listed", TestData.createMathQuestion(1))).block();
+
+        assertThat(underTest.listCategories().collectList().block()).contains("Math: Listed", "Math: Also Listed");
+    }
+
+    @Test
+    void findGame() throws Exception {
+        String id = underTest.createGame("Entertainment: Spam", TestData.createQuestions(5)).block();
+        assertThat(id).matches(Pattern.compile("\\d+"));
+
+        Game g = underTest.findGame(id).block();
+        assertThat(g).isNotNull();
+        assertThat(g.getId()).isEqualTo(id);
+        assertThat(g.getTitle()).isEqualTo("Entertainment: Spam");
+        assertThat(g.getPlayers()).isEqualTo(0);
+        assertThat(g.isStarted()).isFalse();
+    }
+
+    @Test
+    void findGame_notFound() throws Exception {
+        assertThat(underTest.findGame("999-does-not-exist").blockOptional()).isEmpty();
+    }
+
+    @Test
+    void addPlayerToGame() throws Exception {
+        String gameId = underTest.createGame("Math", TestData.createQuestions(5)).block();
+
+        assertThat(underTest.addPlayer(gameId, "bob").block()).satisfies(g -> {
+            assertThat(g.getId()).isEqualTo(gameId);
+            assertThat(g.getPlayers()).isEqualTo(1);
+        });
+        assertThat(underTest.addPlayer(gameId, "alice").block().getPlayers()).isEqualTo(2);
+        // repeat alice (no change)
+        assertThat(underTest.addPlayer(gameId, "alice").blockOptional()).isEmpty();
+        assertThat(underTest.findGame(gameId).block().getPlayers()).isEqualTo(2);
+        // numbered in join order
+        assertThat(underTest.findPlayer(gameId, "bob").block()).isZero();
+        assertThat(underTest.findPlayer(gameId, "alice").block()).isEqualTo(1);
+
+        assertThat(underTest.addPlayer("9999", "alice").blockOptional()).isEmpty();
+    }
+
+    @Test
+    void startPendingGames() throws Exception {
+        String g1 = underTest.createGame("Music", List.of()).block();
+        String g2 = underTest.createGame("Music", List.of()).block();
+        String g3 = underTest.createGame("Music", List.of()).block();
+
+        Queue<String> started = new ConcurrentLinkedQueue<>();
+        underTest.subscribeToGameChannel().subscribe(started::add);
+
+        // more players than the games other tests leave pending
+        for (String player : List.of("alice", "bob", "bubba", "carol")) {
+            assertThat(underTest.addPlayer(g1, player).block()).isNotNull();
+        }
+        for (String player : List.of("zed", "foo", "fud", "fig")) {
+            assertThat(underTest.addPlayer(g2, player).block()).isNotNull();
+        }
+        for (String player : List.of("fred", "fern", "flo")) {
+            assertThat(underTest.addPlayer(g3, player).block()).isNotNull();
+        }
+
+        assertThat(underTest.startPendingGames(Duration.ofMillis(100), 4, 100)).isEqualTo(2);
+        Awaitility.await().atMost(Duration.ofSeconds(1)).untilAsserted(() ->
+            assertThat(started).contains(g1, g2).doesNotContain(g3));
+        // joining while the first round is delayed doesn't make the game pending again
+        assertThat(underTest.addPlayer(g1, "early").blockOptional()).isEmpty();
+        assertThat(underTest.startPendingGames(Duration.ofMillis(100), 4, 100)).isZero();
+
+        // the games are started once the first round is due
+        Awaitility.await().atMost(Duration.ofSeconds(1)).untilAsserted(() -> {
+            underTest.advancePendingRounds(Duration.ofMillis(100), Duration.ofMillis(200), 100);
+            assertThat(underTest.findGame(g1).block().isStarted()).isTrue();
+            assertThat(underTest.findGame(g2).block().isStarted()).isTrue();
+        });
+        assertThat(underTest.findGame(g3).block().isStarted()).isFalse();
+
+        // players can't join once started
+        assertThat(underTest.addPlayer(g1, "late").blockOptional()).isEmpty();
+    }
+
+    @Test
+    void advancePendingRounds() throws Exception {
+        String gameId = underTest.createGame("Math", TestData.createQuestions(2)).block();
+        assertThat(underTest.addPlayer(gameId, "alice").block()).isNotNull();
+
+        Queue<RoundEvent> events = new ConcurrentLinkedQueue<>();
+        underTest.subscribeToRoundsChannel().filter(e -> e.getGameId().equals(gameId)).subscribe(events::add);
+
+        assertThat(underTest.startPendingGames(Duration.ZERO, 1, 100)).isPositive();
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> {
+            underTest.advancePendingRounds(Duration.ofMillis(10), Duration.ofMillis(10), 100);
+            assertThat(events).hasSize(4);
+        });
+
+        // start and complete each round in order
+        assertThat(events).extracting(RoundEvent::getRound, RoundEvent::getStarted).containsExactly(
+            tuple(0, true),
+            tuple(0, false),
+            tuple(1, true),
+            tuple(1, false));
+        assertThat(underTest.findPlayerCount(gameId, 1).block()).isEqualTo(1);
+        assertThat(underTest.findGame(gameId).block().getRound()).isEqualTo(1);
+        assertThat(underTest.findQuestionForRound(gameId, 1).block()).isEqualTo(TestData.createMathQuestion(2));
+        var key = underTest.findAnswerKey(gameId).block();
+        assertThat(key.getRound()).isEqualTo(1);
+        assertThat(key.getCorrectIndex())
+            .isEqualTo(AnswerOptions.of(TestData.createMathQuestion(2), gameId, 1).getCorrectIndex());
+        assertThat(key.isOpen(System.currentTimeMillis())).isFalse();
+    }
+
+    @Test
+    void findSeenQuestions() throws Exception {
+        String gameId = underTest.createGame("Math", TestData.createQuestions(3)).block();
+        assertThat(underTest.findSeenQuestions(List.of("seen-alice")).block().test(TestData.createMathQuestion(1))).isFalse();
+        underTest.addPlayer(gameId, "seen-alice").block();
+
+        var seen = underTest.findSeenQuestions(List.of("seen-bob", "seen-alice")).block();
+        assertThat(TestData.createQuestions(3)).allMatch(seen);
+        assertThat(seen.test(TestData.createMathQuestion(10))).isFalse();
+        assertThat(underTest.findSeenQuestions(List.of("seen-bob")).block().test(TestData.createMathQuestion(1))).isFalse();
+    }
+
+    @Test
+    void eliminatedPlayers() throws Exception {
+        String gameId = underTest.createGame("Math", TestData.createQuestions(2)).block();
+        underTest.addPlayer(gameId, "alice").block();
+        underTest.addPlayer(gameId, "bob").block();
+        underTest.addPlayer(gameId, "carol").block();
+        assertThat(underTest.findPlayer(gameId, "alice").block()).isZero();
+        assertThat(underTest.findPlayer(gameId, "carol").block()).isEqualTo(2);
+        assertThat(underTest.findPlayer(gameId, "mallory").blockOptional()).isEmpty();
+
+        underTest.startPendingGames(Duration.ZERO, 1, 100);
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> {
+            underTest.advancePendingRounds(Duration.ZERO, Duration.ofMillis(500), 100);
+            assertThat(underTest.findPlayerCount(gameId, 0).blockOptional()).contains(3);
+        });
+
+        // one answer per round, none once eliminated
+        assertThat(underTest.markAnswered(gameId, 0, 1).block()).isTrue();
+        assertThat(underTest.markAnswered(gameId, 0, 1).block()).isFalse();
+        underTest.eliminatePlayer(gameId, 1);
+        assertThat(underTest.markAnswered(gameId, 1, 1).block()).isFalse();
+        assertThat(underTest.markAnswered(gameId, 0, 2).block()).isTrue();
+        flush();
+
+        // the next round only counts the remaining players
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> {
+            underTest.advancePendingRounds(Duration.ZERO, Duration.ofMillis(500), 100);
+            assertThat(underTest.findPlayerCount(gameId, 1).blockOptional()).contains(2);
+        });
+    }
+
+    @Test
+    void findAnswerCounts() throws Exception {
+        String gameId = underTest.createGame("Math", TestData.createQuestions(2)).block();
+        underTest.countAnswer(gameId, 1, 0);
+        flush();
+        // counted, and maybe not written yet
+        underTest.countAnswer(gameId, 1, 0);
+        underTest.countAnswer(gameId, 1, 2);
+        underTest.countAnswer(gameId, 0, 2);
+
+        assertThat(underTest.findAnswerCounts(gameId, 1, 3).block()).containsExactly(2, 0, 1);
+
+        // an option no question can offer is rejected, and counts nothing
+        assertThatThrownBy(() -> underTest.countAnswer(gameId, 1, AnswerOptions.MAX_SIZE))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> underTest.countAnswer(gameId, 1, -1))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThat(underTest.findAnswerCounts(gameId, 1, 3).block()).containsExactly(2, 0, 1);
+    }
+
+    static List<Question> createQuestions(String category, int n) {
+        List<Question> questions = new ArrayList<>(n);
+        for (Question q : TestData.createQuestions(n)) {
+            questions.add(withCategory(category, q));
+        }
+        return questions;
+    }
+
+    static Question withCategory(String category, Question q) {
+        return Question.builder()
+            .category(category)
+            .difficulty(q.getDifficulty())
+            .text(q.getText())
+            .correctAnswer(q.getCorrectAnswer())
+            .incorrectAnswers(q.getIncorrectAnswers())
+            .build();
+    }
+}
@@ -0,0 +1,46 @@
+package trivia.repository;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Test;
+import trivia.TestData;
+import trivia.domain.Question;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class InMemoryGameRepositorySpec extends GameRepositorySpec<InMemoryGameRepository> {
+
+    @Override
+    InMemoryGameRepository createRepository() {
+        return new InMemoryGameRepository();
+    }
+
+    @Test
+    void allocateQuestion_inScoreOrder() throws Exception {
+        TestData.createQuestions(10).forEach(q -> underTest.save(q).block());
+
+        // the top question is allocated first, there is no sampling
+        Question first = underTest.findQuestionsInCategory(TestData.MATH_CATEGORY, 0).blockFirst();
+        assertThat(underTest.allocateQuestions(TestData.MATH_CATEGORY, 2).blockFirst()).isEqualTo(first);
+    }
+
+    @Test
+    void sweepAbandonedGames() throws Exception {
+        underTest = new InMemoryGameRepository(Duration.ZERO, Duration.ZERO);
+        String abandoned = underTest.createGame("Math", TestData.createQuestions(1)).block();
+        String finished = underTest.createGame("Math", TestData.createQuestions(1)).block();
+        underTest.addPlayer(finished, "alice").block();
+        underTest.startPendingGames(Duration.ZERO, 1, 100);
+        assertThat(underTest.sweepAbandonedGames(100)).isEqualTo(1);
+        assertThat(underTest.findGame(abandoned).blockOptional()).isEmpty();
+
+        Awaitility.await().atMost(Duration.ofSeconds(1)).untilAsserted(() -> {
+            underTest.advancePendingRounds(Duration.ZERO, Duration.ZERO, 100);
+            assertThat(underTest.findGame(finished).block().isFinished()).isTrue();
+        });
+        assertThat(underTest.sweepAbandonedGames(100)).isEqualTo(1);
+        assertThat(underTest.findGame(finished).blockOptional()).isEmpty();
+    }
+}
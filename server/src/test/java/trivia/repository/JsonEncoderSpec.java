@@ -0,0 +1,82 @@
+package trivia.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import trivia.TestData;
+import trivia.domain.Question;
+import trivia.domain.RoundEvent;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JsonEncoderSpec {
+
+    final ObjectMapper mapper = new ObjectMapper();
+
+    JsonEncoder encoder(CodecFormat format, boolean compress) {
+        var config = new RedisConfig();
+        config.setCodec(format);
+        config.setCompressQuestions(compress);
+        return new JsonEncoder(mapper, config);
+    }
+
+    @Test
+    void roundTripCompact() throws Exception {
+        var underTest = encoder(CodecFormat.compact, false);
+        Question q = TestData.createMathQuestion(3);
+
+        String encoded = underTest.encodeQuestion(q);
+        assertThat(encoded).startsWith("Q");
+        assertThat(encoded.length()).isLessThan(encoder(CodecFormat.json, false).encodeQuestion(q).length());
+        assertThat(underTest.decodeQuestion(encoded)).isEqualTo(q);
+
+        // separators in values don't need escaping
+        Question odd = Question.builder()
+            .category(q.getCategory())
+            .text("1:2 or \"3\"?")
+            .correctAnswer("-1:")
+            .incorrectAnswers(List.of("", "4:"))
+            .build();
+        assertThat(underTest.decodeQuestion(underTest.encodeQuestion(odd))).isEqualTo(odd);
+
+        RoundEvent event = RoundEvent.builder().gameId("42").round(7).started(true).build();
+        assertThat(underTest.encodeRoundEvent(event)).isEqualTo("E17:42");
+        assertThat(underTest.decodeRoundEvent("E17:42")).isEqualTo(event);
+    }
+
+    @Test
+    void compressLongQuestions() throws Exception {
+        var underTest = encoder(CodecFormat.compact, true);
+        Question q = Question.builder()
+            .category(TestData.MATH_CATEGORY)
+            .text(String.join(" ", Collections.nCopies(40, "What is the answer?")))
+            .correctAnswer("42")
+            .incorrectAnswers(List.of("41", "43"))
+            .build();
+
+        String encoded = underTest.encodeQuestion(q);
+        assertThat(encoded).startsWith("Z");
+        assertThat(encoded.length()).isLessThan(encoder(CodecFormat.compact, false).encodeQuestion(q).length());
+        assertThat(underTest.decodeQuestion(encoded)).isEqualTo(q);
+        // short questions are not worth compressing
+        assertThat(underTest.encodeQuestion(TestData.createMathQuestion(3))).startsWith("Q");
+    }
+
+    @Test
+    void readsEitherFormat() throws Exception {
+        var json = encoder(CodecFormat.json, false);
+        var compact = encoder(CodecFormat.compact, true);
+        Question q = TestData.createMathQuestion(5);
+        RoundEvent event = RoundEvent.builder().gameId("1").round(0).started(false).build();
+
+        assertThat(compact.decodeQuestion(json.encodeQuestion(q))).isEqualTo(q);
+        assertThat(json.decodeQuestion(compact.encodeQuestion(q))).isEqualTo(q);
+        assertThat(compact.decodeRoundEvent(json.encodeRoundEvent(event))).isEqualTo(event);
+        assertThat(json.decodeRoundEvent(compact.encodeRoundEvent(event))).isEqualTo(event);
+
+        assertThatThrownBy(() -> json.decodeQuestion("Q3:abc")).isInstanceOf(RepositoryExpection.class);
+    }
+}
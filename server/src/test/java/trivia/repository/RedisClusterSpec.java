@@ -0,0 +1,95 @@
+package trivia.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.cluster.SlotHash;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import trivia.TestData;
+import trivia.domain.Question;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs against a local Redis Cluster, e.g. REDIS_CLUSTER_URI=redis://127.0.0.1:7001
+ */
+@EnabledIfEnvironmentVariable(named = "REDIS_CLUSTER_URI", matches = ".+")
+class RedisClusterSpec {
+
+    RedisConnections connections;
+    RedisGameRepository underTest;
+
+    @BeforeEach
+    void setUp() {
+        var config = new RedisConfig();
+        config.setShards(8);
+        connections = new RedisConnections(true, List.of(RedisURI.create(System.getenv("REDIS_CLUSTER_URI"))), config);
+        underTest = new RedisGameRepository(connections, new JsonEncoder(new ObjectMapper()), config);
+        underTest.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.close();
+        connections.close();
+    }
+
+    @Test
+    void keysOfAGameShareASlot() {
+        List<String> gameIds = IntStream.range(0, 32).mapToObj(String::valueOf).collect(Collectors.toList());
+        for (String gameId : gameIds) {
+            int slot = SlotHash.getSlot(underTest.gameKey(gameId));
+            assertThat(SlotHash.getSlot(underTest.playersKey(gameId))).isEqualTo(slot);
+            assertThat(SlotHash.getSlot(underTest.answersKey(gameId))).isEqualTo(slot);
+            assertThat(SlotHash.getSlot(underTest.answeredKey(gameId, 3))).isEqualTo(slot);
+            assertThat(SlotHash.getSlot(underTest.eliminatedKey(gameId))).isEqualTo(slot);
+            assertThat(SlotHash.getSlot(underTest.pendingGamesKey(underTest.shard(gameId)))).isEqualTo(slot);
+            assertThat(SlotHash.getSlot(underTest.delayedRoundsKey(underTest.shard(gameId)))).isEqualTo(slot);
+        }
+        // and games are spread over the shards
+        assertThat(gameIds.stream().map(underTest::shard).distinct()).hasSize(8);
+    }
+
+    @Test
+    void playGame() {
+        String category = "Math: Cluster " + System.nanoTime();
+        List<Question> questions = new ArrayList<>();
+        for (Question q : TestData.createQuestions(6)) {
+            questions.add(Question.builder()
+                .category(category)
+                .difficulty(q.getDifficulty())
+                .text(q.getText())
+                .correctAnswer(q.getCorrectAnswer())
+                .incorrectAnswers(q.getIncorrectAnswers())
+                .build());
+        }
+        questions.forEach(q -> assertThat(underTest.save(q).block()).isEqualTo(1L));
+        assertThat(underTest.listCategories().collectList().block()).contains(category);
+
+        List<Question> allocated = underTest.allocateQuestions(category, 3).collectList().block();
+        assertThat(allocated).hasSize(3).doesNotHaveDuplicates();
+
+        String gameId = underTest.createGame(category, allocated).block();
+        for (String player : List.of("alice", "bob", "carol")) {
+            assertThat(underTest.addPlayer(gameId, player).block()).isNotNull();
+        }
+        assertThat(underTest.findSeenQuestions(List.of("alice")).block().test(allocated.get(0))).isTrue();
+        assertThat(underTest.findPlayer(gameId, "bob").block()).isEqualTo(1);
+
+        // the scheduler goes through every shard
+        assertThat(underTest.startPendingGames(Duration.ZERO, 3, 100)).isGreaterThanOrEqualTo(1);
+        assertThat(underTest.advancePendingRounds(Duration.ZERO, Duration.ofMinutes(1), 100)).isGreaterThanOrEqualTo(1);
+        assertThat(underTest.findCurrentRound(gameId).block()).isEqualTo(0);
+        assertThat(underTest.findQuestionForRound(gameId, 0).block()).isEqualTo(allocated.get(0));
+        assertThat(underTest.findPlayerCount(gameId, 0).block()).isEqualTo(3);
+        assertThat(underTest.sweepAbandonedGames(100)).isGreaterThanOrEqualTo(0);
+    }
+}
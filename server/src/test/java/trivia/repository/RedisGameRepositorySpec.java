@@ -1,77 +1,284 @@
 package trivia.repository;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.lettuce.core.KillArgs;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisException;
+import io.lettuce.core.RedisURI;
 import io.lettuce.core.api.StatefulRedisConnection;
 import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.test.annotation.MicronautTest;
+import io.micronaut.test.support.TestPropertyProvider;
+import org.awaitility.Awaitility;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
 import trivia.IntegerationTestSupport;
 import trivia.TestData;
-import trivia.domain.Game;
+import trivia.domain.AnswerOptions;
+import trivia.domain.Difficulty;
 import trivia.domain.Question;
+import trivia.domain.RoundEvent;
 
+import javax.annotation.Nonnull;
 import javax.inject.Inject;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.regex.Pattern;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+import static org.assertj.core.api.Assertions.tuple;
 
 
-class RedisGameRepositorySpec extends IntegerationTestSupport {
+@MicronautTest(environments = "it")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class RedisGameRepositorySpec extends GameRepositorySpec<RedisGameRepository> implements TestPropertyProvider {
+
+    @Container
+    GenericContainer<?> redis = IntegerationTestSupport.redisContainer();
 
     @Inject
     StatefulRedisConnection<String,String> connection;
 
+    @Inject
+    ObjectMapper mapper;
+
     @Inject
     StatefulRedisPubSubConnection<String,String> pubSubConnection;
 
-    RedisGameRepository underTest;
+    @Inject
+    RedisClient redisClient;
+
+    @Value("${redis.uri}")
+    String redisUri;
 
     TestData testData;
 
+    @Nonnull
+    @Override
+    public Map<String, String> getProperties() {
+        var properties = new HashMap<>(IntegerationTestSupport.redisProperties(redis));
+        // the tests drive the scheduler themselves
+        properties.put("trivia.scheduler-enabled", "false");
+        return properties;
+    }
+
+    static RedisConfig config() {
+        var config = new RedisConfig();
+        // the tests drive every shard themselves, the application's repository holds the leases
+        config.setShardLeases(false);
+        return config;
+    }
+
+    @Override
+    RedisGameRepository createRepository() {
+        return new RedisGameRepository(connection, pubSubConnection, new JsonEncoder(mapper), config());
+    }
+
+    @Override
+    void flush() {
+        underTest.flushAnswers();
+    }
+
     @BeforeEach
     public void setUp() {
-        // Assume that we have Redis running locally?
-        underTest = new RedisGameRepository(connection, pubSubConnection, new JsonEncoder(mapper));
         testData = TestData.load(mapper);
     }
 
     @Test
-    void roundTripQuestionData() throws Exception {
-        for (int i = 1; i < 5; i++) {
-            assertThat(underTest.save(TestData.createMathQuestion(i)).block()).isGreaterThan(-1);
-        }
+    @Override
+    void allocateQuestion_byDifficulty() throws Exception {
+        super.allocateQuestion_byDifficulty();
 
-        List<Question> found = underTest.findQuestionsInCategory(TestData.MATH_CATEGORY).collectList().block();
-        assertThat(found).contains(TestData.createMathQuestion(2));
+        // indexed by difficulty in sorted sets of their own
+        assertThat(connection.sync().zcard(RedisGameRepository.questionKey("Math: Ramped", Difficulty.hard))).isEqualTo(3);
     }
 
     @Test
-    void allocateQuestion() throws Exception {
-        List<Question> questions = TestData.createQuestions(10);
-        questions.forEach(q -> underTest.save(q).block());
+    void indexDifficulties() throws Exception {
+        String category = "Math: Indexed Later";
+        for (int i = 0; i < 6; i++) {
+            underTest.save(withCategory(category, TestData.createMathQuestion(i, Difficulty.values()[i % 3]))).block();
+        }
+        List<Question> allocated = underTest.allocateQuestions(category, 2).collectList().block();
+
+        // a category stored before it was indexed by difficulty is indexed on startup, with the allocation scores
+        String hard = RedisGameRepository.questionKey(category, Difficulty.hard);
+        String easy = RedisGameRepository.questionKey(category, Difficulty.easy);
+        connection.sync().del(hard, easy);
+        underTest.recountCategories();
+        assertThat(connection.sync().zcard(hard)).isEqualTo(2);
+        assertThat(connection.sync().zcard(easy)).isEqualTo(2);
+        for (Question q : allocated) {
+            String id = QuestionId.of(q);
+            assertThat(connection.sync().zscore(RedisGameRepository.questionKey(category, q.getDifficulty()), id))
+                .isEqualTo(connection.sync().zscore(RedisGameRepository.questionKey(category), id));
+        }
 
-        // take a look at the top question
-        Question first = underTest.findQuestionsInCategory(TestData.MATH_CATEGORY, 0).blockFirst();
-        assertThat(first).isNotNull();
-        String q1 = first.getText();
+        // or when a question is saved again
+        Question first = withCategory(category, TestData.createMathQuestion(0, Difficulty.easy));
+        connection.sync().del(easy);
+        assertThat(underTest.save(first).block()).isZero();
+        assertThat(connection.sync().zcard(easy)).isEqualTo(1);
+    }
 
-        // repeat
-        first = underTest.findQuestionsInCategory(TestData.MATH_CATEGORY, 0).blockFirst();
-        assertThat(first.getText()).isEqualTo(q1); // same result
+    @Test
+    void migrateBaselineKeys() throws Exception {
+        // keys as the first version wrote them
+        String category = "Math: Baseline";
+        Question first = withCategory(category, TestData.createMathQuestion(0, Difficulty.easy));
+        Question second = withCategory(category, TestData.createMathQuestion(1, Difficulty.hard));
+        String gameId = "900001";
+        RoundEvent round = RoundEvent.builder().gameId(gameId).round(0).started(true).build();
+        var sync = connection.sync();
+        sync.zadd(RedisGameRepository.Q_KEY_PREFIX + category, 1, mapper.writeValueAsString(first));
+        sync.zadd(RedisGameRepository.Q_KEY_PREFIX + category, 1, mapper.writeValueAsString(second));
+        sync.hmset("game:" + gameId, Map.of(RedisGameRepository.TITLE, "Math", RedisGameRepository.TOTAL_ROUNDS, "2",
+            RedisGameRepository.ROUND, "1"));
+        sync.sadd("players:" + gameId, "bob", "alice");
+        sync.hmset("rounds:0:game:" + gameId, Map.of("question", mapper.writeValueAsString(first), "players", "2"));
+        sync.zadd("games_pending:", 2, gameId);
+        sync.zadd("delayed:rounds:", 42, mapper.writeValueAsString(round));
+        sync.srem(RedisGameRepository.MIGRATIONS_KEY, RedisGameRepository.BASELINE_MIGRATION);
+
+        underTest.migrateBaselineKeys();
+        underTest.recountCategories();
+
+        // the questions are stored by id in the category
+        assertThat(sync.exists(RedisGameRepository.Q_KEY_PREFIX + category)).isZero();
+        assertThat(underTest.listCategories().collectList().block()).contains(category);
+        assertThat(underTest.findQuestionsInCategory(category).collectList().block()).containsExactlyInAnyOrder(first, second);
+        assertThat(sync.hget(RedisGameRepository.categoryKey(category), RedisGameRepository.TOTAL)).isEqualTo("2");
+        assertThat(sync.hget(RedisGameRepository.categoryKey(category), Difficulty.easy.name())).isEqualTo("1");
+        // the games are dropped, with the scheduler queues
+        assertThat(sync.exists("game:" + gameId, "players:" + gameId, "rounds:0:game:" + gameId,
+            "games_pending:", "delayed:rounds:")).isZero();
+        assertThat(underTest.findGame(gameId).blockOptional()).isEmpty();
+
+        // only once
+        sync.zadd(RedisGameRepository.Q_KEY_PREFIX + category, 1, mapper.writeValueAsString(first));
+        underTest.migrateBaselineKeys();
+        assertThat(sync.exists(RedisGameRepository.Q_KEY_PREFIX + category)).isEqualTo(1);
+        sync.del(RedisGameRepository.Q_KEY_PREFIX + category);
+    }
 
-        // allocate questions
-        List<Question> allocated = underTest.allocateQuestions(TestData.MATH_CATEGORY, 2).collectList().block();
-        assertThat(allocated).hasSize(3);
-        assertThat(allocated.get(0).getText()).isEqualTo(q1); // same result
+    @Test
+    void readFromReplicas() throws Exception {
+        String primaryIp = redis.getContainerInfo().getNetworkSettings().getIPAddress();
+        try (GenericContainer<?> replica = IntegerationTestSupport.redisContainer()
+                .withCommand("redis-server", "--replicaof", primaryIp, "6379")) {
+            replica.start();
+            var replicaUri = String.format("redis://%s:%d", replica.getHost(), replica.getFirstMappedPort());
+            var config = config();
+            config.setReplicas(List.of(replicaUri));
+            config.setQuestionReads(ReadRouting.replicaPreferred);
+            config.setGameReads(ReadRouting.replicaPreferred);
+            var replicaClient = RedisClient.create(replicaUri);
+            try (var connections = new RedisConnections(false, List.of(RedisURI.create(redisUri)), config);
+                 var replicaConnection = replicaClient.connect()) {
+                assertThat(connections.get(ReadRouting.primary)).isSameAs(connections.hot());
+                var repository = new RedisGameRepository(connections, new JsonEncoder(mapper), config);
+
+                String category = "Math: Replicated";
+                List<Question> questions = createQuestions(category, 3);
+                questions.forEach(q -> repository.save(q).block());
+                String gameId = repository.createGame(category, questions).block();
+                String otherId = underTest.createGame(category, questions).block();
+                String gameKey = underTest.gameKey(gameId);
+                connection.sync().hmset(gameKey, Map.of(RedisGameRepository.ROUND, "0",
+                    RedisGameRepository.playersField(0), "2",
+                    RedisGameRepository.opensField(0), "1000",
+                    RedisGameRepository.closesField(0), "2000"));
+                Awaitility.await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> {
+                    assertThat(replicaConnection.sync().hget(gameKey, RedisGameRepository.closesField(0))).isEqualTo("2000");
+                    assertThat(replicaConnection.sync().exists(underTest.gameKey(otherId))).isEqualTo(1);
+                });
+                assertThat(repository.findQuestionsInCategory(category).collectList().block())
+                    .containsExactlyInAnyOrderElementsOf(questions);
+                assertThat(repository.listCategories().collectList().block()).contains(category);
+
+                // make the replica disagree with the primary, as one that is behind would
+                replicaConnection.sync().configSet("replica-read-only", "no");
+                replicaConnection.sync().hmset(gameKey, Map.of(RedisGameRepository.ROUND, "1",
+                    RedisGameRepository.playersField(0), "5",
+                    RedisGameRepository.closesField(0), "9000",
+                    RedisGameRepository.questionField(1), QuestionId.of(questions.get(2))));
+                replicaConnection.sync().del(underTest.gameKey(otherId));
+
+                // round questions never change, so they are read from the replica
+                assertThat(repository.findQuestionForRound(gameId, 1).block()).isEqualTo(questions.get(2));
+                // unless it doesn't have the game yet
+                assertThat(repository.findQuestionForRound(otherId, 1).block()).isEqualTo(questions.get(1));
+
+                // what changes as the game is played is read from the primary
+                assertThat(repository.findCurrentRound(gameId).block()).isZero();
+                assertThat(repository.findPlayerCount(gameId, 0).block()).isEqualTo(2);
+                assertThat(repository.findGame(gameId).block().getRound()).isZero();
+                assertThat(repository.findAnswerKey(gameId).block().getClosesAt()).isEqualTo(2000);
+            } finally {
+                replicaClient.shutdown();
+            }
+        }
+    }
 
-        // repeat
-        first = underTest.findQuestionsInCategory(TestData.MATH_CATEGORY, 0).blockFirst();
-        assertThat(first.getText()).isNotEqualTo(q1); // new top question
+    @Test
+    void operationDeadlines() throws Exception {
+        var config = config();
+        config.setReadTimeout(Duration.ofMillis(100));
+        config.setCircuitFailureThreshold(2);
+        config.setCircuitOpenDuration(Duration.ofMinutes(1));
+        try (var busy = redisClient.connect()) {
+            var repository = new RedisGameRepository(busy, pubSubConnection, new JsonEncoder(mapper), config);
+            // nothing else is answered on the connection until the blocking pop gives up
+            busy.async().blpop(2, "deadlines:" + UUID.randomUUID());
+            assertThatThrownBy(() -> repository.findGame("1").block()).isInstanceOf(RepositoryTimeoutException.class);
+            assertThatThrownBy(() -> repository.listCategories().collectList().block()).isInstanceOf(RepositoryTimeoutException.class);
+            assertThat(repository.getCircuitState()).isEqualTo(CircuitBreaker.State.open);
+
+            // then operations fail without adding to the commands waiting on the connection
+            assertThatThrownBy(() -> repository.findGame("1").block()).isInstanceOf(RepositoryUnavailableException.class);
+        }
     }
 
     @Test
+    void connectionLanes() throws Exception {
+        var config = config();
+        config.setHotConnections(2);
+        config.setBulkQueueSize(1);
+        try (var connections = new RedisConnections(false, List.of(RedisURI.create(redisUri)), config)) {
+            // hot connections are taken in turn, and none of them is a bulk connection
+            var first = connections.hot();
+            var second = connections.hot();
+            assertThat(first).isNotSameAs(second);
+            assertThat(connections.hot()).isSameAs(first);
+            assertThat(connections.hotConnections()).containsExactly(first, second).doesNotContain(connections.bulk());
+
+            // a bulk lane busy with a blocking command rejects more work, and the hot lane doesn't wait for it
+            var blocked = connections.bulk().async().blpop(2, "lanes:" + UUID.randomUUID());
+            assertThatThrownBy(() -> connections.bulk().sync().ping())
+                .isInstanceOf(RedisException.class)
+                .hasMessageContaining("queue");
+            assertThat(connections.hot().sync().ping()).isEqualTo("PONG");
+            assertThat(blocked.isDone()).isFalse();
+            assertThat(blocked.get()).isNull();
+        }
+    }
+
+    @Test
+    @Override
     void listCategories() throws Exception {
+        super.listCategories();
+
         var data = testData.getQuestions();
         for (Question datum : data) {
             underTest.save(datum).block();
@@ -80,6 +287,26 @@ class RedisGameRepositorySpec extends IntegerationTestSupport {
         var categories = underTest.listCategories().collectList().block();
         var expected = testData.getCategories().toArray(new String[0]);
         assertThat(categories).contains(expected);
+
+        // saving again does not change the registered counts
+        Question first = data.get(0);
+        var countsKey = RedisGameRepository.categoryKey(first.getCategory());
+        String total = connection.sync().hget(countsKey, RedisGameRepository.TOTAL);
+        assertThat(underTest.save(first).block()).isZero();
+        assertThat(connection.sync().hget(countsKey, RedisGameRepository.TOTAL)).isEqualTo(total);
+        assertThat(connection.sync().hget(countsKey, first.getDifficulty().name())).isNotNull();
+
+        // questions stored before they were counted are counted on startup, or when saved again
+        connection.sync().del(countsKey);
+        connection.sync().srem(RedisGameRepository.CATEGORIES_KEY, first.getCategory());
+        underTest.recountCategories();
+        assertThat(connection.sync().exists(countsKey)).isZero();
+        assertThat(underTest.save(first).block()).isZero();
+        assertThat(connection.sync().hget(countsKey, RedisGameRepository.TOTAL)).isEqualTo(total);
+        assertThat(underTest.listCategories().collectList().block()).contains(first.getCategory());
+        connection.sync().hdel(countsKey, RedisGameRepository.TOTAL);
+        underTest.recountCategories();
+        assertThat(connection.sync().hget(countsKey, RedisGameRepository.TOTAL)).isEqualTo(total);
     }
 
     @Test
@@ -88,36 +315,59 @@ class RedisGameRepositorySpec extends IntegerationTestSupport {
         String id = stageGame(title);
         assertThat(id).matches(Pattern.compile("\\d+"));
 
-        assertThat(connection.sync().hget(RedisGameRepository.GAME_KEY_PREFIX + id, RedisGameRepository.TITLE))
+        assertThat(connection.sync().hget(underTest.gameKey(id), RedisGameRepository.TITLE))
             .isEqualTo(title);
     }
 
     @Test
-    void findGame() throws Exception {
-        String title = "Entertainment: Spam";
-        String id = stageGame(title);
-        assertThat(id).matches(Pattern.compile("\\d+"));
+    void createGame_allocatesIdsInBlocks() throws Exception {
+        long first = Long.parseLong(stageGame("Entertainment: Eggs"));
+        long second = Long.parseLong(stageGame("Entertainment: Ham"));
+        assertThat(second).isEqualTo(first + 1);
+
+        // a single block was reserved for both games
+        long reserved = Long.parseLong(connection.sync().get(RedisGameRepository.GAME_KEY_PREFIX));
+        assertThat(reserved % config().getGameIdBlockSize()).isZero();
+        assertThat(reserved).isGreaterThanOrEqualTo(second);
+    }
 
-        Game g = underTest.findGame(id).block();
-        assertThat(g).isNotNull();
-        assertThat(g.getId()).isNotBlank();
-        assertThat(g.getTitle()).isNotBlank();
-        assertThat(g.getPlayers()).isEqualTo(0);
-        assertThat(g.isStarted()).isFalse();
+    @Test
+    void createGame_referencesQuestionsById() throws Exception {
+        Question question = TestData.createMathQuestion(7);
+        underTest.save(question).block();
+        String g1 = underTest.createGame("Math", List.of(question)).block();
+        String g2 = underTest.createGame("Math", List.of(question)).block();
+
+        // both rounds hold the id of the single stored question
+        String id = QuestionId.of(question);
+        assertThat(connection.sync().hget(underTest.gameKey(g1), RedisGameRepository.questionField(0)))
+            .isEqualTo(id);
+        assertThat(connection.sync().hget(underTest.gameKey(g2), RedisGameRepository.questionField(0)))
+            .isEqualTo(id);
+        assertThat(connection.sync().zscore(RedisGameRepository.questionKey(TestData.MATH_CATEGORY), id)).isNotNull();
+        assertThat(underTest.findQuestionForRound(g2, 0).block()).isEqualTo(question);
     }
 
     @Test
-    void findGame_notFound() throws Exception {
-        assertThat(underTest.findGame("999-does-not-exist").blockOptional()).isEmpty();
+    void createGame_singleCompactHash() throws Exception {
+        String gameId = stageGame("Entertainment: Bacon");
+        String gameKey = underTest.gameKey(gameId);
+
+        // game and rounds share one hash that Redis keeps in its compact encoding
+        assertThat(connection.sync().hlen(gameKey)).isEqualTo(8);
+        assertThat(connection.sync().objectEncoding(gameKey)).isIn("ziplist", "listpack");
+        assertThat(connection.sync().hget(gameKey, RedisGameRepository.questionField(4))).isNotNull();
+        assertThat(RedisGameRepository.questionField(3)).isEqualTo("r3:q");
+        assertThat(RedisGameRepository.playersField(100)).isEqualTo("r100:p");
     }
 
     @Test
-    void addPlayerToGame() throws Exception {
+    void addPlayerToGame_storage() throws Exception {
         // first create a game
         var title = "Math";
         String gameId = stageGame(title);
-        var gameKey = RedisGameRepository.GAME_KEY_PREFIX + gameId;
-        var playerKey = RedisGameRepository.PLAYERS_KEY_PREFIX + gameId;
+        var gameKey = underTest.gameKey(gameId);
+        var playerKey = underTest.playersKey(gameId);
 
         assertThat(connection.sync().hgetall(gameKey)).containsAllEntriesOf(Map.of(
             RedisGameRepository.TITLE, title
@@ -135,27 +385,32 @@ class RedisGameRepositorySpec extends IntegerationTestSupport {
         });
         // repeat alice (no change)
         assertThat(underTest.addPlayer(gameId, "alice").blockOptional()).isEmpty();
+        // but her seen questions are written again, in case the join failed writing them
+        connection.sync().del(RedisGameRepository.seenKey("alice"));
+        assertThat(underTest.addPlayer(gameId, "alice").blockOptional()).isEmpty();
+        assertThat(connection.sync().exists(RedisGameRepository.seenKey("alice"))).isEqualTo(1);
 
         // check related data is as expected
         assertThat(underTest.findGame(gameId).block()).satisfies(g -> {
             assertThat(g.getId()).isEqualTo(gameId);
             assertThat(g.getPlayers()).isEqualTo(2);
         });
-        assertThat(connection.sync().smembers(playerKey)).contains("bob", "alice");
+        // numbered in join order
+        assertThat(connection.sync().hgetall(playerKey)).containsOnly(entry("bob", "0"), entry("alice", "1"));
         assertThat(connection.sync().hgetall(gameKey)).containsAllEntriesOf(Map.of(
             RedisGameRepository.TITLE, title
         ));
 
         // Game is enqueued to for starting
-        assertThat(connection.sync().zscore(RedisGameRepository.GAME_PENDING_KEY, gameId)).isEqualTo(2.0);
+        assertThat(connection.sync().zscore(underTest.pendingGamesKey(0), gameId)).isEqualTo(2.0);
     }
 
     @Test
     void addPlayerToGame_NotFound() throws Exception {
         // repeat alice (no change)
         String doesNotExist = "9999";
-        var gameKey = RedisGameRepository.GAME_KEY_PREFIX + doesNotExist;
-        var playerKey = RedisGameRepository.PLAYERS_KEY_PREFIX + doesNotExist;
+        var gameKey = underTest.gameKey(doesNotExist);
+        var playerKey = underTest.playersKey(doesNotExist);
 
         assertThat(underTest.addPlayer(doesNotExist, "alice").blockOptional()).isEmpty();
 
@@ -169,8 +424,8 @@ class RedisGameRepositorySpec extends IntegerationTestSupport {
         // first create a game
         var title = "Math";
         String gameId = stageGame(title);
-        var gameKey = RedisGameRepository.GAME_KEY_PREFIX + gameId;
-        var playerKey = RedisGameRepository.PLAYERS_KEY_PREFIX + gameId;
+        var gameKey = underTest.gameKey(gameId);
+        var playerKey = underTest.playersKey(gameId);
 
         // force it to a started state
         connection.sync().hset(gameKey, RedisGameRepository.ROUND, "0");
@@ -184,7 +439,7 @@ class RedisGameRepositorySpec extends IntegerationTestSupport {
 
 
     @Test
-    void startPendingGames() throws Exception {
+    void startPendingGames_pendingGamesQueue() throws Exception {
         String g1 = underTest.createGame("Music", List.of()).block();
         String g2 = underTest.createGame("Music", List.of()).block();
         String g3 = underTest.createGame("Music", List.of()).block();
@@ -200,28 +455,407 @@ class RedisGameRepositorySpec extends IntegerationTestSupport {
 
 
         // ensure that three games are pending
-        assertThat(connection.sync().zrange(RedisGameRepository.GAME_PENDING_KEY, 0, -1))
+        assertThat(connection.sync().zrange(underTest.pendingGamesKey(0), 0, -1))
             .containsOnly(g1, g2, g3);
 
-        underTest.startPendingGames(Duration.ofMillis(100), 2);
-        underTest.advancePendingRounds(Duration.ofMillis(100), Duration.ofMillis(200));
-
-        // change the games are all started
-        assertThat(underTest.findGame(g1).block()).satisfies(g -> {
-            assertThat(g.isStarted()).isTrue();
-        });
-        assertThat(underTest.findGame(g2).block()).satisfies(g -> {
-            assertThat(g.isStarted()).isTrue();
+        assertThat(underTest.startPendingGames(Duration.ofMillis(100), 2, 100)).isEqualTo(2);
+
+        // change the games are all started, once the first round is due
+        Awaitility.await().atMost(Duration.ofSeconds(1)).untilAsserted(() -> {
+            underTest.advancePendingRounds(Duration.ofMillis(100), Duration.ofMillis(200), 100);
+            assertThat(underTest.findGame(g1).block()).satisfies(g -> {
+                assertThat(g.isStarted()).isTrue();
+            });
+            assertThat(underTest.findGame(g2).block()).satisfies(g -> {
+                assertThat(g.isStarted()).isTrue();
+            });
         });
         assertThat(underTest.findGame(g3).block()).satisfies(g -> {
             assertThat(g.isStarted()).isFalse();
         });
 
         // ensure that only game 3 is still pending
-        assertThat(connection.sync().zrange(RedisGameRepository.GAME_PENDING_KEY, 0, -1))
+        assertThat(connection.sync().zrange(underTest.pendingGamesKey(0), 0, -1))
             .containsOnly(g3);
     }
 
+    @Test
+    void advancePendingRounds_compactCodec() throws Exception {
+        var config = config();
+        config.setCodec(CodecFormat.compact);
+        var compact = new RedisGameRepository(connection, pubSubConnection, new JsonEncoder(mapper, config), config);
+        String gameId = compact.createGame("Math", TestData.createQuestions(2)).block();
+        assertThat(compact.addPlayer(gameId, "alice").block()).isNotNull();
+
+        Queue<RoundEvent> events = new ConcurrentLinkedQueue<>();
+        // json nodes can still read the events
+        underTest.subscribeToRoundsChannel().filter(e -> e.getGameId().equals(gameId)).subscribe(events::add);
+
+        assertThat(compact.startPendingGames(Duration.ZERO, 1, 100)).isPositive();
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> {
+            compact.advancePendingRounds(Duration.ofMillis(10), Duration.ofMillis(10), 100);
+            assertThat(events).hasSize(4);
+        });
+        assertThat(events).extracting(RoundEvent::getRound, RoundEvent::getStarted).containsExactly(
+            tuple(0, true),
+            tuple(0, false),
+            tuple(1, true),
+            tuple(1, false));
+        assertThat(underTest.findQuestionForRound(gameId, 1).block()).isEqualTo(TestData.createMathQuestion(2));
+    }
+
+    @Test
+    void schedulerWakeups() throws Exception {
+        String gameId = underTest.createGame("Math", TestData.createQuestions(1)).block();
+        underTest.addPlayer(gameId, "alice").block();
+        Queue<Integer> wakeups = new ConcurrentLinkedQueue<>();
+        underTest.subscribeToSchedulerWakeups().subscribe(wakeups::add);
+
+        // the scheduler of the game's shard is woken
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> {
+            underTest.wakeScheduler(gameId).block();
+            assertThat(wakeups).contains(underTest.shard(gameId));
+        });
+
+        // and sleeps no longer than until the first round of the started game
+        Instant firstRound = Instant.now().plusSeconds(10);
+        assertThat(underTest.startPendingGames(Duration.ofSeconds(10), 1, 100)).isPositive();
+        assertThat(underTest.findNextRoundDue()).hasValueSatisfying(due -> assertThat(due).isBeforeOrEqualTo(firstRound.plusSeconds(1)));
+        underTest.advancePendingRounds(Duration.ofSeconds(10), Duration.ofSeconds(10), 100);
+        assertThat(underTest.findNextRoundDue()).hasValueSatisfying(due -> assertThat(due).isBeforeOrEqualTo(firstRound.plusSeconds(1)));
+    }
+
+    @Test
+    void finishedGameExpires() throws Exception {
+        String gameId = underTest.createGame("Math", TestData.createQuestions(1)).block();
+        String gameKey = underTest.gameKey(gameId);
+        assertThat(connection.sync().pttl(gameKey)).isPositive();
+        underTest.addPlayer(gameId, "alice").block();
+
+        assertThat(underTest.startPendingGames(Duration.ofSeconds(10), 1, 100)).isPositive();
+        // started games don't expire, and can't be joined while the first round is delayed
+        assertThat(connection.sync().pttl(gameKey)).isEqualTo(-1);
+        assertThat(underTest.addPlayer(gameId, "late").blockOptional()).isEmpty();
+        assertThat(connection.sync().zscore(underTest.pendingGamesKey(0), gameId)).isNull();
+
+        connection.sync().zadd(underTest.delayedRoundsKey(0), 0,
+            connection.sync().zrange(underTest.delayedRoundsKey(0), 0, -1).stream()
+                .filter(m -> m.contains(gameId)).findFirst().orElseThrow());
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> {
+            underTest.advancePendingRounds(Duration.ofMillis(10), Duration.ofMillis(10), 100);
+            assertThat(underTest.findGame(gameId).block().isFinished()).isTrue();
+        });
+        assertThat(connection.sync().pttl(gameKey)).isPositive();
+        assertThat(connection.sync().pttl(underTest.playersKey(gameId))).isPositive();
+    }
+
+    @Test
+    void sweepAbandonedGames() throws Exception {
+        String gameId = underTest.createGame("Math", TestData.createQuestions(1)).block();
+        underTest.addPlayer(gameId, "alice").block();
+        assertThat(underTest.sweepAbandonedGames(10)).isZero();
+
+        // the game expired while waiting for players
+        connection.sync().del(underTest.gameKey(gameId));
+        assertThat(underTest.sweepAbandonedGames(10)).isPositive();
+        assertThat(connection.sync().zscore(underTest.pendingGamesKey(0), gameId)).isNull();
+    }
+
+    @Test
+    @Override
+    void findSeenQuestions() throws Exception {
+        super.findSeenQuestions();
+
+        // a fixed size bitmap per player
+        assertThat(connection.sync().strlen(RedisGameRepository.seenKey("seen-alice")))
+            .isLessThanOrEqualTo(SeenQuestions.BITS / 8);
+        assertThat(connection.sync().pttl(RedisGameRepository.seenKey("seen-alice"))).isPositive();
+    }
+
+    @Test
+    void eliminatedPlayers_writtenBehind() throws Exception {
+        String gameId = underTest.createGame("Math", TestData.createQuestions(2)).block();
+        underTest.addPlayer(gameId, "alice").block();
+        underTest.addPlayer(gameId, "bob").block();
+        underTest.addPlayer(gameId, "carol").block();
+        assertThat(underTest.findPlayer(gameId, "alice").block()).isZero();
+        assertThat(underTest.findPlayer(gameId, "carol").block()).isEqualTo(2);
+        assertThat(underTest.findPlayer(gameId, "mallory").blockOptional()).isEmpty();
+
+        underTest.startPendingGames(Duration.ZERO, 1, 100);
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> {
+            underTest.advancePendingRounds(Duration.ZERO, Duration.ofMinutes(1), 100);
+            assertThat(underTest.findPlayerCount(gameId, 0).blockOptional()).contains(3);
+        });
+
+        // one answer per round, none once eliminated
+        assertThat(underTest.markAnswered(gameId, 0, 1).block()).isTrue();
+        assertThat(underTest.markAnswered(gameId, 0, 1).block()).isFalse();
+        underTest.eliminatePlayer(gameId, 1);
+        assertThat(underTest.markAnswered(gameId, 1, 1).block()).isFalse();
+        assertThat(underTest.markAnswered(gameId, 0, 2).block()).isTrue();
+
+        // written behind as bitmaps
+        underTest.flushAnswers();
+        assertThat(connection.sync().getbit(underTest.eliminatedKey(gameId), 1)).isEqualTo(1);
+        assertThat(connection.sync().bitcount(underTest.answeredKey(gameId, 0))).isEqualTo(2);
+
+        // another node loads the player's bits when it first sees them
+        var other = new RedisGameRepository(connection, pubSubConnection, new JsonEncoder(mapper), config());
+        assertThat(other.findPlayer(gameId, "bob").block()).isEqualTo(1);
+        assertThat(other.markAnswered(gameId, 1, 1).block()).isFalse();
+        assertThat(other.findPlayer(gameId, "carol").block()).isEqualTo(2);
+        assertThat(other.markAnswered(gameId, 0, 2).block()).isFalse();
+        assertThat(other.markAnswered(gameId, 1, 2).block()).isTrue();
+
+        // the next round only counts the remaining players
+        connection.sync().zadd(underTest.delayedRoundsKey(0), 0,
+            connection.sync().zrange(underTest.delayedRoundsKey(0), 0, -1).stream()
+                .filter(m -> m.contains(gameId)).findFirst().orElseThrow());
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> {
+            underTest.advancePendingRounds(Duration.ZERO, Duration.ofMinutes(1), 100);
+            assertThat(underTest.findPlayerCount(gameId, 1).blockOptional()).contains(2);
+        });
+    }
+
+    @Test
+    void markAnswered_afterEviction() throws Exception {
+        String gameId = underTest.createGame("Math", TestData.createQuestions(2)).block();
+        underTest.addPlayer(gameId, "alice").block();
+        underTest.addPlayer(gameId, "bob").block();
+        underTest.startPendingGames(Duration.ZERO, 1, 100);
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> {
+            underTest.advancePendingRounds(Duration.ZERO, Duration.ofMinutes(1), 100);
+            assertThat(underTest.findPlayerCount(gameId, 0).blockOptional()).contains(2);
+        });
+        assertThat(underTest.markAnswered(gameId, 0, 0).block()).isTrue();
+        underTest.eliminatePlayer(gameId, 1);
+
+        // a node with room for one game forgets this one, and loads its bits again, with what is not written yet
+        var config = config();
+        config.setNearCacheSize(1);
+        var small = new RedisGameRepository(connection, pubSubConnection, new JsonEncoder(mapper), config);
+        assertThat(small.markAnswered(gameId, 0, 0).block()).isTrue();
+        small.eliminatePlayer(gameId, 1);
+        small.markAnswered(stageGame("Math"), 0, 0).block();
+        assertThat(small.markAnswered(gameId, 0, 0).block()).isFalse();
+        assertThat(small.markAnswered(gameId, 0, 1).block()).isFalse();
+
+        underTest.flushAnswers();
+        var other = new RedisGameRepository(connection, pubSubConnection, new JsonEncoder(mapper), config());
+        assertThat(other.markAnswered(gameId, 0, 0).block()).isFalse();
+        assertThat(other.markAnswered(gameId, 1, 1).block()).isFalse();
+        assertThat(other.markAnswered(gameId, 1, 0).block()).isTrue();
+    }
+
+    @Test
+    void markAnswered_writtenAfterRoundExpired() throws Exception {
+        String gameId = underTest.createGame("Math", TestData.createQuestions(2)).block();
+        underTest.addPlayer(gameId, "alice").block();
+        underTest.startPendingGames(Duration.ZERO, 1, 100);
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> {
+            underTest.advancePendingRounds(Duration.ZERO, Duration.ofMillis(100), 100);
+            assertThat(underTest.findPlayerCount(gameId, 0).blockOptional()).contains(1);
+        });
+        assertThat(underTest.markAnswered(gameId, 0, 0).block()).isTrue();
+
+        // the round completes and its bitmap expires before the bit is written behind
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> {
+            underTest.advancePendingRounds(Duration.ZERO, Duration.ofMillis(100), 100);
+            assertThat(underTest.findPlayerCount(gameId, 1).blockOptional()).contains(1);
+        });
+        connection.sync().del(underTest.answeredKey(gameId, 0));
+        underTest.flushAnswers();
+        assertThat(connection.sync().getbit(underTest.answeredKey(gameId, 0), 0)).isEqualTo(1);
+        assertThat(connection.sync().pttl(underTest.answeredKey(gameId, 0))).isPositive();
+
+        // nothing is written once the game is gone
+        underTest.eliminatePlayer(gameId, 0);
+        connection.sync().del(underTest.gameKey(gameId), underTest.eliminatedKey(gameId));
+        underTest.flushAnswers();
+        assertThat(connection.sync().exists(underTest.eliminatedKey(gameId))).isZero();
+    }
+
+    @Test
+    void countAnswer_writeBehind() throws Exception {
+        String gameId = stageGame("Math");
+        String answersKey = underTest.answersKey(gameId);
+        underTest.countAnswer(gameId, 0, 2);
+        underTest.countAnswer(gameId, 0, 2);
+        underTest.countAnswer(gameId, 0, 3);
+
+        // nothing is written until the flush
+        assertThat(connection.sync().exists(answersKey)).isZero();
+        underTest.flushAnswers();
+        assertThat(connection.sync().hgetall(answersKey)).containsOnly(
+            entry(RedisGameRepository.answerField(0, 2), "2"),
+            entry(RedisGameRepository.answerField(0, 3), "1"));
+
+        underTest.countAnswer(gameId, 0, 3);
+        underTest.flushAnswers();
+        assertThat(connection.sync().hget(answersKey, RedisGameRepository.answerField(0, 3))).isEqualTo("2");
+        // with the game's time to live
+        assertThat(connection.sync().pttl(answersKey)).isPositive();
+
+        // counts written after the game's keys are gone don't create them again
+        connection.sync().del(underTest.gameKey(gameId), answersKey);
+        underTest.countAnswer(gameId, 0, 3);
+        underTest.flushAnswers();
+        assertThat(connection.sync().exists(answersKey)).isZero();
+    }
+
+    @Test
+    void countAnswer_journaled() throws Exception {
+        Path journalPath = Files.createTempFile("journal", null);
+        Files.delete(journalPath);
+        var config = config();
+        config.setReadTimeout(Duration.ofMillis(100));
+        config.setCircuitFailureThreshold(1);
+        config.setCircuitOpenDuration(Duration.ofMillis(200));
+        config.setJournalPath(journalPath.toString());
+        String gameId = stageGame("Math");
+        String answersKey = underTest.answersKey(gameId);
+        Path copy = Files.createTempFile("journal", null);
+        try (var busy = redisClient.connect()) {
+            var repository = new RedisGameRepository(busy, pubSubConnection, new JsonEncoder(mapper), config);
+            try {
+                // Redis doesn't answer on the connection until the blocking pop gives up
+                busy.async().blpop(2, "journal:" + UUID.randomUUID());
+                assertThatThrownBy(() -> repository.findGame(gameId).block()).isInstanceOf(RepositoryTimeoutException.class);
+                assertThat(repository.getCircuitState()).isEqualTo(CircuitBreaker.State.open);
+
+                // answers are kept in the journal meanwhile
+                repository.countAnswer(gameId, 0, 2);
+                repository.countAnswer(gameId, 0, 2);
+                repository.flushAnswers();
+                repository.countAnswer(gameId, 0, 3);
+                repository.flushAnswers();
+                assertThat(connection.sync().exists(answersKey)).isZero();
+                Files.copy(journalPath, copy, StandardCopyOption.REPLACE_EXISTING);
+
+                // and replayed once Redis is back
+                Awaitility.await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> {
+                    repository.flushAnswers();
+                    assertThat(repository.getCircuitState()).isEqualTo(CircuitBreaker.State.closed);
+                });
+                assertThat(connection.sync().hmget(answersKey, RedisGameRepository.answerField(0, 2), RedisGameRepository.answerField(0, 3)))
+                    .extracting(v -> v.getValue())
+                    .containsExactly("2", "1");
+                assertThat(connection.sync().pttl(answersKey)).isPositive();
+            } finally {
+                repository.close();
+            }
+        }
+
+        // replaying the same entries again doesn't count them twice
+        config.setJournalPath(copy.toString());
+        var restarted = new RedisGameRepository(connection, pubSubConnection, new JsonEncoder(mapper), config);
+        try {
+            restarted.flushAnswers();
+            assertThat(connection.sync().hget(answersKey, RedisGameRepository.answerField(0, 2))).isEqualTo("2");
+        } finally {
+            restarted.close();
+            Files.deleteIfExists(journalPath);
+            Files.deleteIfExists(copy);
+        }
+    }
+
+    @Test
+    void findAnswerKey() throws Exception {
+        var cached = new RedisGameRepository(connection, pubSubConnection, new JsonEncoder(mapper), config());
+        cached.initialize();
+        try {
+            String gameId = cached.createGame("Math", TestData.createQuestions(2)).block();
+            cached.addPlayer(gameId, "alice").block();
+            assertThat(cached.findAnswerKey(gameId).blockOptional()).isEmpty();
+
+            cached.startPendingGames(Duration.ZERO, 1, 100);
+            Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> {
+                cached.advancePendingRounds(Duration.ZERO, Duration.ofMinutes(1), 100);
+                assertThat(cached.findAnswerKey(gameId).blockOptional()).isPresent();
+            });
+            var key = cached.findAnswerKey(gameId).block();
+            assertThat(key.getRound()).isZero();
+            var options = AnswerOptions.of(TestData.createMathQuestion(1), gameId, 0);
+            assertThat(key.getCorrectIndex()).isEqualTo(options.getCorrectIndex());
+            assertThat(key.getOptions()).isEqualTo(options.size());
+            assertThat(key.isOpen(System.currentTimeMillis())).isTrue();
+            assertThat(key.getClosesAt() - key.getOpensAt()).isEqualTo(Duration.ofMinutes(1).toMillis());
+
+            // served locally once loaded
+            connection.sync().hdel(underTest.gameKey(gameId), RedisGameRepository.closesField(0));
+            assertThat(cached.findAnswerKey(gameId).block()).isEqualTo(key);
+        } finally {
+            cached.close();
+        }
+    }
+
+    @Test
+    void nearCache() throws Exception {
+        var cached = new RedisGameRepository(connection, pubSubConnection, new JsonEncoder(mapper), config());
+        cached.initialize();
+        try {
+            String gameId = cached.createGame("Math", TestData.createQuestions(2)).block();
+            var gameKey = underTest.gameKey(gameId);
+            assertThat(cached.findQuestionForRound(gameId, 1).block()).isEqualTo(TestData.createMathQuestion(2));
+
+            // served locally, even though the round in Redis is gone
+            connection.sync().hdel(gameKey, RedisGameRepository.questionField(1));
+            assertThat(cached.findQuestionForRound(gameId, 1).block()).isEqualTo(TestData.createMathQuestion(2));
+        } finally {
+            cached.close();
+        }
+    }
+
+    @Test
+    void nearCache_tracking() throws Exception {
+        var config = config();
+        config.setNearCacheTracking(true);
+        // tracking needs a pub/sub connection that is not subscribed yet
+        var invalidations = redisClient.connectPubSub();
+        var cached = new RedisGameRepository(connection, invalidations, new JsonEncoder(mapper), config);
+        cached.initialize();
+        try {
+            String gameId = cached.createGame("Math", TestData.createQuestions(2)).block();
+            var gameKey = underTest.gameKey(gameId);
+            connection.sync().hset(gameKey, RedisGameRepository.ROUND, "0");
+            assertThat(cached.findCurrentRound(gameId).block()).isEqualTo(0);
+
+            // a change to the game is pushed by Redis
+            connection.sync().hset(gameKey, RedisGameRepository.ROUND, "1");
+            Awaitility.await().atMost(Duration.ofSeconds(1)).untilAsserted(() ->
+                assertThat(cached.findCurrentRound(gameId).block()).isEqualTo(1));
+        } finally {
+            cached.close();
+            invalidations.close();
+        }
+    }
+
+    @Test
+    void nearCache_trackingAfterReconnect() throws Exception {
+        var config = config();
+        config.setNearCacheTracking(true);
+        try (var connections = new RedisConnections(false, List.of(RedisURI.create(redisUri)), config)) {
+            var cached = new RedisGameRepository(connections, new JsonEncoder(mapper), config);
+            cached.initialize();
+            try {
+                String gameId = cached.createGame("Math", TestData.createQuestions(2)).block();
+                var gameKey = underTest.gameKey(gameId);
+                connection.sync().hset(gameKey, RedisGameRepository.ROUND, "0");
+
+                // the connection drops, and tracking is turned on again once it is back
+                connection.sync().clientKill(KillArgs.Builder.id(connections.hot().sync().clientId()));
+                Awaitility.await().atMost(Duration.ofSeconds(5)).ignoreExceptions().untilAsserted(() ->
+                    assertThat(cached.findCurrentRound(gameId).block()).isEqualTo(0));
+                connection.sync().hset(gameKey, RedisGameRepository.ROUND, "1");
+                Awaitility.await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+                    assertThat(cached.findCurrentRound(gameId).block()).isEqualTo(1));
+            } finally {
+                cached.close();
+            }
+        }
+    }
+
     private String stageGame(String title) {
         List<Question> questions = TestData.createQuestions(5);
         return underTest.createGame(title, questions).block();
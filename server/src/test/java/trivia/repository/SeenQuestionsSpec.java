@@ -0,0 +1,44 @@
+package trivia.repository;
+
+import org.junit.jupiter.api.Test;
+import trivia.TestData;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SeenQuestionsSpec {
+
+    @Test
+    void mightContain() throws Exception {
+        var seen = new SeenQuestions();
+        String id = QuestionId.of(TestData.createMathQuestion(1));
+        assertThat(seen.mightContain(id)).isFalse();
+        seen.add(id);
+        assertThat(seen.mightContain(id)).isTrue();
+        assertThat(seen.mightContain(QuestionId.of(TestData.createMathQuestion(2)))).isFalse();
+
+        assertThat(SeenQuestions.NONE.mightContain(id)).isFalse();
+        assertThat(SeenQuestions.of(null).mightContain(id)).isFalse();
+    }
+
+    @Test
+    void offsetsAreDistinct() throws Exception {
+        // an even second half would be a multiple of the size after a few hashes
+        assertThat(SeenQuestions.offsets("0123456780000000")).doesNotHaveDuplicates();
+        assertThat(SeenQuestions.offsets("0123456700000000")).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void falsePositiveRate() throws Exception {
+        var seen = new SeenQuestions();
+        for (int i = 0; i < 500; i++) {
+            seen.add(QuestionId.of(TestData.createMathQuestion(i)));
+        }
+        int falsePositives = 0;
+        for (int i = 500; i < 10_500; i++) {
+            if (seen.mightContain(QuestionId.of(TestData.createMathQuestion(i)))) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(500);
+    }
+}
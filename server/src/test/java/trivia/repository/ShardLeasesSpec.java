@@ -0,0 +1,65 @@
+package trivia.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import trivia.IntegerationTestSupport;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardLeasesSpec extends IntegerationTestSupport {
+
+    // apart from the leases of the application's repository
+    String namespace;
+
+    @BeforeEach
+    void setUp() {
+        namespace = "leases:" + UUID.randomUUID() + ":";
+    }
+
+    @Test
+    void sharedBetweenNodes() throws Exception {
+        var commands = connection.sync();
+        var first = new ShardLeases(namespace, 8, Duration.ofSeconds(10));
+        var second = new ShardLeases(namespace, 8, Duration.ofSeconds(10));
+
+        // a node on its own drives every shard
+        first.renew(commands);
+        assertThat(first.owned()).containsExactly(0, 1, 2, 3, 4, 5, 6, 7);
+        assertThat(commands.get(first.leaseKey(0))).isEqualTo(first.getNodeId());
+
+        // a node that joins takes the shards the first gives back
+        second.renew(commands);
+        assertThat(second.owned()).isEmpty();
+        first.renew(commands);
+        assertThat(first.owned()).hasSize(4);
+        second.renew(commands);
+        assertThat(second.owned()).hasSize(4);
+        assertThat(IntStream.concat(IntStream.of(first.owned()), IntStream.of(second.owned())).sorted())
+            .containsExactly(0, 1, 2, 3, 4, 5, 6, 7);
+
+        // and the shards of a node that leaves go to the others
+        first.release(commands);
+        assertThat(first.owned()).isEmpty();
+        second.renew(commands);
+        assertThat(second.owned()).containsExactly(0, 1, 2, 3, 4, 5, 6, 7);
+    }
+
+    @Test
+    void expire() throws Exception {
+        var commands = connection.sync();
+        var stopped = new ShardLeases(namespace, 2, Duration.ofMillis(200));
+        var other = new ShardLeases(namespace, 2, Duration.ofMillis(200));
+        stopped.renew(commands);
+        assertThat(stopped.owned()).containsExactly(0, 1);
+
+        // a node that doesn't renew stops driving its shards, and then another node takes them
+        Thread.sleep(300);
+        assertThat(stopped.owned()).isEmpty();
+        other.renew(commands);
+        assertThat(other.owned()).containsExactly(0, 1);
+    }
+}
@@ -0,0 +1,78 @@
+package trivia.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class WriteJournalSpec {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void appendAndReplay() throws Exception {
+        try (var journal = WriteJournal.open(dir.resolve("journal"), 4096)) {
+            assertThat(journal.hasPending()).isFalse();
+            assertThat(journal.append(WriteJournal.Kind.answer, "answers:{0}:1", "0:2", "3")).isTrue();
+            assertThat(journal.append(WriteJournal.Kind.bit, "answered:{0}:1:0", "7")).isTrue();
+            assertThat(journal.append(WriteJournal.Kind.seen, "seen:bob", "1000", "4", "5")).isTrue();
+
+            // read back in order, a batch at a time
+            List<WriteJournal.Entry> first = journal.pending(2);
+            assertThat(first).extracting(WriteJournal.Entry::getSeq, WriteJournal.Entry::getKind, WriteJournal.Entry::getKey, WriteJournal.Entry::getArgs)
+                .containsExactly(
+                    tuple(1L, WriteJournal.Kind.answer, "answers:{0}:1", List.of("0:2", "3")),
+                    tuple(2L, WriteJournal.Kind.bit, "answered:{0}:1:0", List.of("7")));
+            journal.replayed(first.get(1));
+            List<WriteJournal.Entry> rest = journal.pending(2);
+            assertThat(rest).extracting(WriteJournal.Entry::getSeq, WriteJournal.Entry::getArgs)
+                .containsExactly(tuple(3L, List.of("1000", "4", "5")));
+            journal.replayed(rest.get(0));
+            assertThat(journal.hasPending()).isFalse();
+
+            // entries keep being numbered after everything was replayed
+            journal.append(WriteJournal.Kind.bit, "answered:{0}:1:1", "8");
+            assertThat(journal.pending(10)).extracting(WriteJournal.Entry::getSeq).containsExactly(4L);
+        }
+    }
+
+    @Test
+    void bounded() throws Exception {
+        try (var journal = WriteJournal.open(dir.resolve("journal"), 128)) {
+            int appended = 0;
+            while (journal.append(WriteJournal.Kind.answer, "answers:{0}:1", "0:2", "1")) {
+                appended++;
+            }
+            assertThat(appended).isPositive();
+            assertThat(journal.pending(1000)).hasSize(appended);
+
+            // replaying everything makes room again
+            journal.replayed(journal.pending(1000).get(appended - 1));
+            assertThat(journal.append(WriteJournal.Kind.answer, "answers:{0}:1", "0:2", "1")).isTrue();
+        }
+    }
+
+    @Test
+    void reopen() throws Exception {
+        Path path = dir.resolve("journal");
+        long nodeId;
+        try (var journal = WriteJournal.open(path, 4096)) {
+            nodeId = journal.getNodeId();
+            journal.append(WriteJournal.Kind.answer, "answers:{0}:1", "0:1", "1");
+            journal.append(WriteJournal.Kind.answer, "answers:{0}:1", "0:2", "1");
+            journal.replayed(journal.pending(1).get(0));
+        }
+
+        // what wasn't replayed survives a restart, under the same node id
+        try (var journal = WriteJournal.open(path, 4096)) {
+            assertThat(journal.getNodeId()).isEqualTo(nodeId);
+            assertThat(journal.pending(10)).extracting(WriteJournal.Entry::getSeq, WriteJournal.Entry::getArgs)
+                .containsExactly(tuple(2L, List.of("0:2", "1")));
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package trivia.service;
 
+import io.micronaut.context.annotation.Property;
 import io.micronaut.test.annotation.MicronautTest;
 import io.micronaut.test.annotation.MockBean;
 import io.micronaut.websocket.WebSocketBroadcaster;
@@ -8,6 +9,8 @@ import org.junit.jupiter.api.Test;
 import reactor.core.publisher.Mono;
 import trivia.TestData;
 import trivia.TriviaConfig;
+import trivia.domain.AnswerKey;
+import trivia.domain.AnswerOptions;
 import trivia.domain.Game;
 import trivia.domain.Question;
 import trivia.repository.GameRepository;
@@ -15,12 +18,14 @@ import trivia.repository.GameRepository;
 import javax.inject.Inject;
 
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
 @MicronautTest
+@Property(name = "trivia.scheduler-enabled", value = "false")
 public class DefaultGameServiceSpec {
 
     @Inject
@@ -97,6 +102,7 @@ public class DefaultGameServiceSpec {
             .title("Math")
             .players(3)
             .build()));
+        when(repository.wakeScheduler(gameId)).thenReturn(Mono.empty());
 
         Game g = service.joinGame(gameId, username, sessionId).block();
         assertThat(g).isNotNull();
@@ -106,5 +112,105 @@ public class DefaultGameServiceSpec {
         assertThat(g.isStarted()).isFalse();
 
         verify(repository, times(1)).addPlayer(gameId, username);
+        // the game has enough players to start
+        verify(repository, times(1)).wakeScheduler(gameId);
+    }
+
+    @Test
+    void joinGame_wakesSchedulerFromMinimumPlayers() {
+        when(repository.addPlayer("101", "bob")).thenReturn(Mono.just(Game.builder().id("101").players(2).build()));
+        when(repository.addPlayer("102", "bob")).thenReturn(Mono.just(Game.builder().id("102").players(4).build()));
+        when(repository.wakeScheduler("102")).thenReturn(Mono.empty());
+
+        assertThat(service.joinGame("101", "bob", "aSessionId").block().getPlayers()).isEqualTo(2);
+        assertThat(service.joinGame("102", "bob", "aSessionId").block().getPlayers()).isEqualTo(4);
+
+        // not enough players yet
+        verify(repository, never()).wakeScheduler("101");
+        // more than enough, the wake up when the minimum joined may have been missed
+        verify(repository, times(1)).wakeScheduler("102");
+    }
+
+    @Test
+    void findStats() {
+        String gameId = "100";
+        Question q = TestData.createMathQuestion(3);
+        AnswerOptions options = AnswerOptions.of(q, gameId, 0);
+        when(repository.findQuestionForRound(gameId, 0)).thenReturn(Mono.just(q));
+        int[] counts = new int[options.size()];
+        counts[options.getCorrectIndex()] = 5;
+        counts[options.getAnswers().indexOf("Donkey")] = 1;
+        when(repository.findAnswerCounts(gameId, 0, options.size())).thenReturn(Mono.just(counts));
+
+        // keyed by answer, in option order
+        assertThat(service.findStats(gameId, 0).block())
+            .containsKeys(options.getAnswers().toArray(new String[0]))
+            .containsEntry(q.getCorrectAnswer(), 5)
+            .containsEntry("Donkey", 1);
+        verify(repository, times(1)).findAnswerCounts(gameId, 0, options.size());
+    }
+
+    @Test
+    void answerQuestion() {
+        long now = System.currentTimeMillis();
+        when(repository.findAnswerKey("100")).thenReturn(Mono.just(AnswerKey.builder()
+            .round(2)
+            .correctIndex(1)
+            .options(4)
+            .opensAt(now - 1000)
+            .closesAt(now + 10_000)
+            .build()));
+        when(repository.markAnswered(eq("100"), eq(2), anyInt())).thenReturn(Mono.just(true));
+
+        assertThat(service.answerQuestion("100", 0, 1).block()).isTrue();
+        assertThat(service.answerQuestion("100", 1, 3).block()).isFalse();
+        verify(repository, times(1)).countAnswer("100", 2, 1);
+        verify(repository, times(1)).countAnswer("100", 2, 3);
+        // not an option, so not counted
+        assertThat(service.answerQuestion("100", 2, 4).block()).isFalse();
+        assertThat(service.answerQuestion("100", 3, -1).block()).isFalse();
+        verify(repository, times(2)).countAnswer(anyString(), anyInt(), anyInt());
+        verify(repository, never()).findQuestionForRound(anyString(), anyInt());
+        // wrong answers eliminate the player
+        verify(repository, never()).eliminatePlayer("100", 0);
+        verify(repository, times(1)).eliminatePlayer("100", 1);
+        verify(repository, times(1)).eliminatePlayer("100", 2);
+        verify(repository, times(1)).eliminatePlayer("100", 3);
+    }
+
+    @Test
+    void answerQuestion_Dropped() {
+        long now = System.currentTimeMillis();
+        when(repository.findAnswerKey("100")).thenReturn(Mono.just(AnswerKey.builder()
+            .round(2)
+            .correctIndex(1)
+            .options(4)
+            .opensAt(now - 1000)
+            .closesAt(now + 10_000)
+            .build()));
+        when(repository.markAnswered("100", 2, 0)).thenReturn(Mono.just(false));
+
+        // already answered or eliminated, nothing is counted and there is no result
+        assertThat(service.answerQuestion("100", 0, 1).blockOptional()).isEmpty();
+        verify(repository, never()).countAnswer(anyString(), anyInt(), anyInt());
+        verify(repository, never()).eliminatePlayer(anyString(), anyInt());
+    }
+
+    @Test
+    void answerQuestion_RoundClosed() {
+        long now = System.currentTimeMillis();
+        when(repository.findAnswerKey("100")).thenReturn(Mono.just(AnswerKey.builder()
+            .round(2)
+            .correctIndex(1)
+            .options(4)
+            .opensAt(now - 10_000)
+            .closesAt(now - 1)
+            .build()));
+        when(repository.markAnswered("100", 2, 0)).thenReturn(Mono.just(true));
+
+        // late answers are rejected, even when correct, and not counted
+        assertThat(service.answerQuestion("100", 0, 1).block()).isFalse();
+        verify(repository, never()).countAnswer(anyString(), anyInt(), anyInt());
+        verify(repository, times(1)).eliminatePlayer("100", 0);
     }
 }
@@ -1,14 +1,17 @@
 package trivia.service;
 
+import io.micronaut.context.annotation.Property;
 import io.micronaut.test.annotation.MicronautTest;
 import io.micronaut.test.annotation.MockBean;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import reactor.core.publisher.DirectProcessor;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import trivia.TestData;
 import trivia.TriviaConfig;
+import trivia.domain.Difficulty;
 import trivia.domain.Question;
 import trivia.repository.GameRepository;
 
@@ -16,13 +19,21 @@ import javax.inject.Inject;
 import javax.naming.InsufficientResourcesException;
 
 import java.util.List;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @MicronautTest
+@Property(name = "trivia.scheduler-enabled", value = "false")
 public class DefaultQuestionServiceSpec {
 
     @Inject
@@ -54,7 +65,26 @@ public class DefaultQuestionServiceSpec {
         when(repository.listCategories()).thenReturn(Flux.fromStream(cats.stream()));
 
         List<String> result = service.listCategories().collectList().block();
-        assertThat(result).containsExactly(cats.toArray(new String[0]));
+        assertThat(result).containsExactly(cats.stream().sorted().toArray(String[]::new));
+    }
+
+    @Test
+    void listCategories_Snapshot() {
+        DirectProcessor<String> registered = DirectProcessor.create();
+        when(repository.subscribeToCategoriesChannel()).thenReturn(registered);
+        when(repository.listCategories()).thenReturn(Flux.just("Math", "Art"));
+        service.initialize();
+
+        assertThat(service.listCategories().collectList().block()).containsExactly("Art", "Math");
+        assertThat(service.listCategories().collectList().block()).containsExactly("Art", "Math");
+        verify(repository, times(1)).listCategories();
+
+        // a new category replaces the snapshot
+        when(repository.listCategories()).thenReturn(Flux.just("Math", "Art", "Science"));
+        registered.onNext("Science");
+        assertThat(service.listCategories().collectList().block()).containsExactly("Art", "Math", "Science");
+        verify(repository, times(2)).listCategories();
+        service.close();
     }
 
     @Test
@@ -67,6 +97,63 @@ public class DefaultQuestionServiceSpec {
         assertThat(questions).hasSize(5);
     }
 
+    @Test
+    void allocateQuestions_FromPacks() {
+        String category = "Entertainment: Sports";
+        List<Question> qs = data.getQuestions().subList(0, 15);
+        when(repository.allocateQuestions(category, 5)).thenReturn(Flux.fromIterable(qs.subList(0, 5)));
+        when(repository.allocateQuestions(category, 10)).thenReturn(Flux.fromIterable(qs.subList(5, 15)));
+
+        // the first game allocates directly
+        assertThat(service.allocateQuestions(category).block()).isEqualTo(qs.subList(0, 5));
+        verify(repository, times(1)).allocateQuestions(category, 5);
+
+        // then packs are kept ready for the category, allocated in one call
+        service.refillQuestionPacks();
+        verify(repository, times(1)).allocateQuestions(category, 10);
+        assertThat(service.allocateQuestions(category).block()).isEqualTo(qs.subList(5, 10));
+        assertThat(service.allocateQuestions(category).block()).isEqualTo(qs.subList(10, 15));
+        verify(repository, times(1)).allocateQuestions(category, 5);
+    }
+
+    @Test
+    void allocateQuestions_KnownPlayers() {
+        String category = "Entertainment: Sports";
+        List<Question> qs = data.getQuestions().subList(0, 15);
+        Set<Question> seen = Set.copyOf(qs.subList(0, 4));
+        when(repository.sampleQuestions(category, 15)).thenReturn(Flux.fromIterable(qs));
+        when(repository.allocateSampled(eq(category), any())).thenReturn(Mono.empty());
+        when(repository.findSeenQuestions(List.of("alice", "bob"))).thenReturn(Mono.just(seen::contains));
+
+        // questions the players have seen are skipped, and only the chosen ones are allocated
+        assertThat(service.allocateQuestions(category, List.of("alice", "bob")).block())
+            .isEqualTo(qs.subList(4, 9));
+        verify(repository, times(1)).allocateSampled(category, qs.subList(4, 9));
+        verify(repository, never()).allocateQuestions(eq(category), anyInt());
+
+        // and only repeated when there aren't enough others
+        when(repository.sampleQuestions(category, 15)).thenReturn(Flux.fromIterable(qs.subList(0, 6)));
+        assertThat(service.allocateQuestions(category, List.of("alice", "bob")).block())
+            .containsExactly(qs.get(4), qs.get(5), qs.get(0), qs.get(1), qs.get(2));
+    }
+
+    @Test
+    void allocateQuestions_ByDifficulty() {
+        String category = "Entertainment: Sports";
+        List<Question> qs = data.getQuestions().subList(0, 5);
+        var rounds = List.of(Difficulty.easy, Difficulty.easy, Difficulty.medium, Difficulty.medium, Difficulty.hard);
+        when(repository.allocateQuestions(category, rounds)).thenReturn(Flux.fromIterable(qs));
+
+        // the profile is stretched over the rounds
+        assertThat(service.allocateQuestionsByDifficulty(category, List.of(Difficulty.easy, Difficulty.medium, Difficulty.hard)).block())
+            .isEqualTo(qs);
+
+        // the category is short of a difficulty
+        when(repository.allocateQuestions(category, rounds)).thenReturn(Flux.fromIterable(qs.subList(0, 4)));
+        assertThrows(InsufficientDataException.class, () -> service.allocateQuestionsByDifficulty(category,
+            List.of(Difficulty.easy, Difficulty.medium, Difficulty.hard)).block());
+    }
+
     @Test
     void allocateQuestions_NotEnough() {
         String category = "Entertainment: Sports";
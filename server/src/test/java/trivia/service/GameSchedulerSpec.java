@@ -0,0 +1,73 @@
+package trivia.service;
+
+import io.micronaut.scheduling.ScheduledExecutorTaskScheduler;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import trivia.TestData;
+import trivia.TriviaConfig;
+import trivia.domain.RoundEvent;
+import trivia.repository.InMemoryGameRepository;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class GameSchedulerSpec {
+
+    ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
+    InMemoryGameRepository repository = new InMemoryGameRepository();
+    GameScheduler underTest;
+
+    @BeforeEach
+    void setUp() {
+        TriviaConfig config = new TriviaConfig();
+        config.setMinimumPlayersPerGame(2);
+        config.setRoundStartDelay(Duration.ofMillis(200));
+        config.setRoundDuration(Duration.ofMillis(200));
+        // longer than the test, it only runs when woken or when a round is due
+        config.setSchedulerMaxSleep(Duration.ofHours(1));
+        underTest = new GameScheduler(repository, config, new ScheduledExecutorTaskScheduler(executor));
+        underTest.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void runWhenWokenAndWhenDue() throws Exception {
+        // the first run finds nothing to do, and sleeps
+        Thread.sleep(100);
+        Queue<String> started = new ConcurrentLinkedQueue<>();
+        Queue<RoundEvent> rounds = new ConcurrentLinkedQueue<>();
+        repository.subscribeToGameChannel().subscribe(started::add);
+        repository.subscribeToRoundsChannel().subscribe(rounds::add);
+        String gameId = repository.createGame("Math", TestData.createQuestions(2)).block();
+        repository.addPlayer(gameId, "alice").block();
+        repository.addPlayer(gameId, "bob").block();
+
+        // the game starts when the scheduler is woken
+        Thread.sleep(100);
+        assertThat(started).isEmpty();
+        repository.wakeScheduler(gameId).block();
+        Awaitility.await().atMost(Duration.ofMillis(500)).untilAsserted(() -> assertThat(started).containsExactly(gameId));
+
+        // and its rounds start and complete when due, without another wakeup
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() ->
+            assertThat(rounds).extracting(RoundEvent::getRound, RoundEvent::getStarted).containsExactly(
+                tuple(0, true),
+                tuple(0, false),
+                tuple(1, true),
+                tuple(1, false)));
+        assertThat(repository.findNextRoundDue()).isEmpty();
+    }
+}